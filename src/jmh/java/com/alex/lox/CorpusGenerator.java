@@ -0,0 +1,140 @@
+package com.alex.lox;
+
+import java.util.Locale;
+import java.util.Random;
+
+/// Deterministic generator of synthetic Lox sources, each shaped to stress a different part of the scanner
+final class CorpusGenerator {
+    enum Kind {
+        /// Realistic mix of declarations, control flow, calls and literals
+        MIXED,
+        /// Long runs of identifiers and keywords with few literals
+        IDENTIFIERS,
+        /// Number and short string literals
+        LITERALS,
+        /// Mostly `//` comment lines
+        COMMENTS,
+        /// Long, sometimes multi-line, string literals
+        LONG_STRINGS,
+        /// Pathological input which is mostly unexpected characters
+        ERRORS
+    }
+
+    private static final String[] KEYWORDS = {"and", "class", "else", "false", "for", "fun", "if", "nil", "or",
+            "print", "return", "super", "this", "true", "var", "while"};
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "==", "!=", "<", "<=", ">", ">=", "and", "or"};
+    private static final String WORDS = "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod " +
+            "tempor incididunt ut labore et dolore magna aliqua";
+    private static final String GARBAGE = "@#$%^&~|?`\\'[]:";
+
+    private final Kind kind;
+    private final Random random;
+    private final String[] names;
+
+    private CorpusGenerator(Kind kind) {
+        this.kind = kind;
+        this.random = new Random(kind.ordinal());
+        this.names = new String[1024];
+        for (int i = 0; i < names.length; i++) names[i] = name();
+    }
+
+    /// Generate a source of the given kind, at least `size` characters long (overshooting by at most one line)
+    static String generate(Kind kind, int size) {
+        var generator = new CorpusGenerator(kind);
+        var sb = new StringBuilder(size + 4096);
+        while (sb.length() < size) generator.line(sb);
+        return sb.toString();
+    }
+
+    /// Parse a size such as `1KB`, `64MB` or `512`
+    static int parseSize(String size) {
+        var s = size.trim().toUpperCase(Locale.ROOT);
+        if (s.endsWith("KB")) return Integer.parseInt(s.substring(0, s.length() - 2)) << 10;
+        if (s.endsWith("MB")) return Integer.parseInt(s.substring(0, s.length() - 2)) << 20;
+        return Integer.parseInt(s);
+    }
+
+    private void line(StringBuilder sb) {
+        switch (kind) {
+            case MIXED -> mixedLine(sb);
+            case IDENTIFIERS -> {
+                sb.append(pick(KEYWORDS)).append(' ').append(pick(names));
+                for (int i = random.nextInt(8); i >= 0; i--) sb.append(' ').append(pick(OPERATORS)).append(' ').append(pick(names));
+                sb.append(";\n");
+            }
+            case LITERALS -> {
+                sb.append("print ").append(number());
+                for (int i = random.nextInt(8); i >= 0; i--) {
+                    sb.append(", ");
+                    if (random.nextInt(4) == 0) sb.append('"').append(words(1 + random.nextInt(3))).append('"');
+                    else sb.append(number());
+                }
+                sb.append(";\n");
+            }
+            case COMMENTS -> {
+                if (random.nextInt(10) == 0) mixedLine(sb);
+                else sb.append("    // ").append(words(8 + random.nextInt(12))).append('\n');
+            }
+            case LONG_STRINGS -> {
+                sb.append("var ").append(pick(names)).append(" = \"");
+                for (int i = random.nextInt(20); i >= 0; i--) {
+                    sb.append(words(10 + random.nextInt(30)));
+                    sb.append(random.nextInt(4) == 0 ? '\n' : ' ');
+                }
+                sb.append("\";\n");
+            }
+            case ERRORS -> {
+                for (int i = 40 + random.nextInt(40); i >= 0; i--) {
+                    sb.append(random.nextInt(8) == 0 ? ' ' : GARBAGE.charAt(random.nextInt(GARBAGE.length())));
+                }
+                sb.append('\n');
+            }
+        }
+    }
+
+    private void mixedLine(StringBuilder sb) {
+        String indent = "    ".repeat(random.nextInt(4));
+        switch (random.nextInt(6)) {
+            case 0 -> sb.append(indent).append("var ").append(pick(names)).append(" = ").append(number()).append(";\n");
+            case 1 -> sb.append(indent).append("if (").append(pick(names)).append(" >= ").append(number()).append(") {\n");
+            case 2 -> sb.append(indent).append("print \"").append(words(3)).append("\" + ").append(pick(names)).append(";\n");
+            case 3 -> sb.append(indent).append("fun ").append(pick(names)).append('(').append(pick(names)).append(", ")
+                    .append(pick(names)).append(") {\n");
+            case 4 -> sb.append(indent).append(pick(names)).append(" = ").append(pick(names)).append('.')
+                    .append(pick(names)).append('(').append(number()).append(");\n");
+            default -> sb.append(indent).append("}\n");
+        }
+    }
+
+    private String name() {
+        var sb = new StringBuilder();
+        sb.append((char) ('a' + random.nextInt(26)));
+        for (int i = random.nextInt(12); i > 0; i--) {
+            int c = random.nextInt(38);
+            sb.append(c < 26 ? (char) ('a' + c) : c < 36 ? (char) ('0' + c - 26) : '_');
+        }
+        return sb.toString();
+    }
+
+    private String number() {
+        return random.nextBoolean()
+                ? Integer.toString(random.nextInt(100_000))
+                : random.nextInt(1000) + "." + random.nextInt(1_000_000);
+    }
+
+    private String words(int count) {
+        var sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(' ');
+            int start = random.nextInt(WORDS.length() - 12);
+            start = WORDS.indexOf(' ', start) + 1;
+            int end = WORDS.indexOf(' ', start);
+            sb.append(WORDS, start, end < 0 ? WORDS.length() : end);
+        }
+        return sb.toString();
+    }
+
+    private String pick(String[] options) {
+        return options[random.nextInt(options.length)];
+    }
+}
@@ -0,0 +1,132 @@
+package com.alex.lox;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static com.alex.lox.TokenType.Symbol.EOF;
+
+/// Scanner throughput over synthetic corpora.
+///
+/// Besides ops/s, every benchmark reports the `tokens` and `megabytes` auxiliary counters, which JMH normalises to
+/// tokens/s and MB/s. Run with `-prof gc` to get bytes allocated per operation (`gc.alloc.rate.norm`); the number of
+/// tokens per operation is printed when each corpus is generated, so allocation per token is the quotient of the two.
+///
+/// Build and run with `mvn -Pbench,vector package && java -jar target/benchmarks.jar ScannerBenchmark -prof gc`,
+/// narrowing the corpora with e.g. `-p corpus=MIXED -p size=500MB`. Without the `vector` profile the vectorized
+/// benchmarks fall back to the scalar searches.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g", "--add-modules", "jdk.incubator.vector"})
+public class ScannerBenchmark {
+    @Param({"MIXED", "IDENTIFIERS", "LITERALS", "COMMENTS", "LONG_STRINGS", "ERRORS"})
+    public CorpusGenerator.Kind corpus;
+
+    @Param({"1KB", "64KB", "1MB", "64MB", "500MB"})
+    public String size;
+
+    private String source;
+    private byte[] utf8;
+    private int tokenCount;
+    private double megabytes;
+    private PrintStream stdout;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long tokens;
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+            megabytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void generate() {
+        source = CorpusGenerator.generate(corpus, CorpusGenerator.parseSize(size));
+        utf8 = source.getBytes(StandardCharsets.UTF_8);
+        tokenCount = new Scanner(source).scanPacked().size();
+        megabytes = utf8.length / 1e6;
+        System.err.printf("%n%s %s: %d bytes, %d tokens per operation%n", corpus, size, utf8.length, tokenCount);
+
+        // Lox.run prints its output, which would otherwise dominate the measurement
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void restoreStdout() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public Scanner.ScanResult scanTokens(Counters counters) {
+        var result = new Scanner(source).scanTokens();
+        count(counters);
+        return result;
+    }
+
+    @Benchmark
+    public PackedTokens scanPacked(Counters counters) {
+        var result = new Scanner(source).scanPacked();
+        count(counters);
+        return result;
+    }
+
+    @Benchmark
+    public Scanner.ScanResult parallel(Counters counters) {
+        var result = new ParallelScanner().scanTokens(source);
+        count(counters);
+        return result;
+    }
+
+    @Benchmark
+    public void streaming(Counters counters, Blackhole bh) {
+        drain(new StreamingScanner(new StringReader(source)), bh);
+        count(counters);
+    }
+
+    @Benchmark
+    public void utf8(Counters counters, Blackhole bh) {
+        drain(new Utf8Scanner(MemorySegment.ofArray(utf8)), bh);
+        count(counters);
+    }
+
+    @Benchmark
+    public void utf8Vectorized(Counters counters, Blackhole bh) {
+        drain(new Utf8Scanner(MemorySegment.ofArray(utf8), true), bh);
+        count(counters);
+    }
+
+    @Benchmark
+    public void loxRun(Counters counters) {
+        Lox.run(source);
+        count(counters);
+    }
+
+    private static void drain(TokenStream scanner, Blackhole bh) {
+        Token token;
+        do {
+            token = scanner.nextToken();
+            bh.consume(token);
+        } while (token.type() != EOF);
+        bh.consume(scanner.errors());
+    }
+
+    private void count(Counters counters) {
+        counters.tokens += tokenCount;
+        counters.megabytes += megabytes;
+    }
+}
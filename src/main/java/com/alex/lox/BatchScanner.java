@@ -0,0 +1,108 @@
+package com.alex.lox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/// Scans many files concurrently, one virtual thread per file.
+///
+/// Virtual threads make the per-file tasks cheap, but every one of them maps and reads a file, so the number of
+/// files being scanned at once is capped to bound open file handles and I/O pressure. Results are returned in the
+/// order the files were given (and directories expanded in sorted order), however the scans interleave.
+public final class BatchScanner {
+    public static final int DEFAULT_MAX_OPEN_FILES = 64;
+    private static final List<String> SOURCE_EXTENSIONS = List.of(".lox", ".jl");
+
+    private final int maxOpenFiles;
+
+    public BatchScanner() {
+        this(DEFAULT_MAX_OPEN_FILES);
+    }
+
+    /// @param maxOpenFiles the maximum number of files scanned at the same time
+    public BatchScanner(int maxOpenFiles) {
+        if (maxOpenFiles < 1) throw new IllegalArgumentException("maxOpenFiles must be positive: " + maxOpenFiles);
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    /// Outcome of scanning one file: the number of bytes and tokens scanned and the scan errors, or the exception
+    /// which prevented the file from being read (an [IOException]) or scanned
+    public record FileResult(Path file, long bytes, int tokens, List<Scanner.ScanError> errors, Exception failure) {
+        public boolean hasErrors() {
+            return failure != null || !errors.isEmpty();
+        }
+    }
+
+    /// Scan the given files, and the Lox sources (`.lox` and `.jl` files) found anywhere under the given directories
+    public List<FileResult> scan(List<Path> paths) throws IOException, InterruptedException {
+        List<Path> files = expand(paths);
+        var permits = new Semaphore(maxOpenFiles);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<FileResult>> futures = new ArrayList<>(files.size());
+            for (Path file : files) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return scan(file);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            List<FileResult> results = new ArrayList<>(files.size());
+            for (var future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Scanning failed unexpectedly", e.getCause());
+                }
+            }
+            return results;
+        }
+    }
+
+    private static FileResult scan(Path file) {
+        try (var scanner = Utf8Scanner.open(file).withMaxErrors(Lox.MAX_ERRORS)) {
+            int tokens = 1;
+            while (scanner.nextToken().type() != TokenType.Symbol.EOF) tokens++;
+            return new FileResult(file, Files.size(file), tokens, scanner.errors(), null);
+        } catch (IOException | RuntimeException e) {
+            // a failure of one file, e.g. truncated while mapped, doesn't abort the scan of the others
+            return new FileResult(file, 0, 0, List.of(), e);
+        }
+    }
+
+    /// The given files, and the Lox sources found anywhere under the given directories in sorted order
+    static List<Path> expand(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : paths) {
+            if (!Files.isDirectory(path)) {
+                // missing or unreadable files are reported as failures of their own scan
+                files.add(path);
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(path)) {
+                walk.filter(Files::isRegularFile)
+                        .filter(BatchScanner::isSource)
+                        .sorted()
+                        .forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+    private static boolean isSource(Path file) {
+        String name = file.getFileName().toString();
+        return SOURCE_EXTENSIONS.stream().anyMatch(name::endsWith);
+    }
+}
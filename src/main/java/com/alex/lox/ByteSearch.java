@@ -0,0 +1,102 @@
+package com.alex.lox;
+
+import java.lang.foreign.MemorySegment;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+/// Bulk searches over ranges of UTF-8 source bytes, used by [Utf8Scanner] to skip whitespace, comments and string
+/// bodies in one call rather than byte by byte. Every search is over the range `from` (inclusive) to `to` (exclusive)
+/// of the segment.
+///
+/// The [#scalar()] implementation is plain loops; [#vectorized()] uses the incubating Vector API when the
+/// `jdk.incubator.vector` module is available, and falls back to the scalar implementation when it is not. The Vector
+/// API implementation lives in `src/vector/java` and is only compiled by the `vector` build profile
+/// (`mvn -Pvector package`), so that default builds don't depend on an incubator module.
+interface ByteSearch {
+    /// Index of the first occurrence of `b`, or `to` if there is none
+    long indexOf(MemorySegment s, long from, long to, byte b);
+
+    /// Index of the last occurrence of `b`, or -1 if there is none
+    long lastIndexOf(MemorySegment s, long from, long to, byte b);
+
+    /// Index of the first byte which is not a space, tab or carriage return, or `to` if there is none
+    long skipWhitespace(MemorySegment s, long from, long to);
+
+    /// Number of occurrences of `b`
+    long count(MemorySegment s, long from, long to, byte b);
+
+    /// Number of UTF-16 code units the bytes decode to: one per code point, plus one more for each code point
+    /// outside the basic multilingual plane (i.e. each 4-byte sequence)
+    long utf16Length(MemorySegment s, long from, long to);
+
+    static ByteSearch scalar() {
+        return Scalar.INSTANCE;
+    }
+
+    /// The Vector API implementation, or the scalar one if it was not compiled in or the `jdk.incubator.vector`
+    /// module has not been added to the JVM (with `--add-modules jdk.incubator.vector`)
+    static ByteSearch vectorized() {
+        return Vectorized.INSTANCE;
+    }
+
+    /// Holder for the vectorized implementation, so it is only looked up (and the incubator module only touched)
+    /// when first asked for. It is loaded by name since it is not on the class path of default builds
+    final class Vectorized {
+        static final ByteSearch INSTANCE = load();
+
+        private static ByteSearch load() {
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return scalar();
+            try {
+                var type = Class.forName("com.alex.lox.VectorByteSearch");
+                return (ByteSearch) type.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return scalar();
+            }
+        }
+    }
+
+    final class Scalar implements ByteSearch {
+        static final Scalar INSTANCE = new Scalar();
+
+        private Scalar() {}
+
+        @Override
+        public long indexOf(MemorySegment s, long from, long to, byte b) {
+            for (long i = from; i < to; i++) if (s.get(JAVA_BYTE, i) == b) return i;
+            return to;
+        }
+
+        @Override
+        public long lastIndexOf(MemorySegment s, long from, long to, byte b) {
+            for (long i = to - 1; i >= from; i--) if (s.get(JAVA_BYTE, i) == b) return i;
+            return -1;
+        }
+
+        @Override
+        public long skipWhitespace(MemorySegment s, long from, long to) {
+            for (long i = from; i < to; i++) {
+                byte b = s.get(JAVA_BYTE, i);
+                if (b != ' ' && b != '\t' && b != '\r') return i;
+            }
+            return to;
+        }
+
+        @Override
+        public long count(MemorySegment s, long from, long to, byte b) {
+            long count = 0;
+            for (long i = from; i < to; i++) if (s.get(JAVA_BYTE, i) == b) count++;
+            return count;
+        }
+
+        @Override
+        public long utf16Length(MemorySegment s, long from, long to) {
+            long length = 0;
+            for (long i = from; i < to; i++) {
+                byte b = s.get(JAVA_BYTE, i);
+                if ((b & 0xC0) != 0x80) length++;
+                if ((b & 0xF8) == 0xF0) length++;
+            }
+            return length;
+        }
+    }
+}
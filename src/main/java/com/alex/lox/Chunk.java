@@ -0,0 +1,93 @@
+package com.alex.lox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/// Compiled script: the [Op] instructions, the source line of each, and the constant pool they refer to, all held
+/// in primitive arrays.
+///
+/// Like values on the [Vm] stack, constants are stored as a pair of slots: numbers unboxed in a `double[]`, with a
+/// `null` object, and strings in the `Object[]`.
+public final class Chunk {
+    private int[] code = new int[256];
+    private int[] lines = new int[256]; // source line of each instruction, for runtime errors
+    private int size = 0;
+
+    private double[] numbers = new double[16]; // value of number constants
+    private Object[] objects = new Object[16]; // value of other constants, null for numbers
+    private int constants = 0;
+    private final Map<Object, Integer> constantIndex = new HashMap<>(); // index of each constant, to share duplicates
+
+    private int maxStack = 0; // deepest the stack gets when running this chunk
+
+    /// Append an instruction, returning its index
+    int write(int opcode, int operand, int line) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+            lines = Arrays.copyOf(lines, size * 2);
+        }
+        code[size] = Op.encode(opcode, operand);
+        lines[size] = line;
+        return size++;
+    }
+
+    /// Replace the operand of instruction `i`
+    void patch(int i, int operand) {
+        code[i] = Op.encode(Op.opcode(code[i]), operand);
+    }
+
+    /// Index of a number constant, adding it to the pool if it is not there yet
+    int addConstant(double value) {
+        // box the bits rather than the double, so that 0.0 and -0.0 stay distinct
+        Integer index = constantIndex.get(Double.doubleToRawLongBits(value));
+        if (index != null) return index;
+        index = addConstant(value, null);
+        constantIndex.put(Double.doubleToRawLongBits(value), index);
+        return index;
+    }
+
+    /// Index of a string constant, adding it to the pool if it is not there yet
+    int addConstant(String value) {
+        return constantIndex.computeIfAbsent(value, v -> addConstant(0, v));
+    }
+
+    private int addConstant(double number, Object object) {
+        if (constants == numbers.length) {
+            numbers = Arrays.copyOf(numbers, constants * 2);
+            objects = Arrays.copyOf(objects, constants * 2);
+        }
+        numbers[constants] = number;
+        objects[constants] = object;
+        return constants++;
+    }
+
+    void updateMaxStack(int depth) {
+        maxStack = Math.max(maxStack, depth);
+    }
+
+    /// Number of instructions
+    public int size() {
+        return size;
+    }
+
+    int[] code() {
+        return code;
+    }
+
+    int[] lines() {
+        return lines;
+    }
+
+    double[] numbers() {
+        return numbers;
+    }
+
+    Object[] objects() {
+        return objects;
+    }
+
+    int maxStack() {
+        return maxStack;
+    }
+}
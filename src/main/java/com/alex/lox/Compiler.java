@@ -0,0 +1,444 @@
+package com.alex.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.alex.lox.TokenType.*;
+import static com.alex.lox.TokenType.Symbol.*;
+
+/// Single-pass compiler from tokens to [Chunk]s of bytecode for the [Vm].
+///
+/// Tokens are pulled from a [TokenStream] one at a time and turned straight into instructions, with no syntax tree in
+/// between: statements by recursive descent, and expressions by precedence climbing (a Pratt parser), each token
+/// being handled by a prefix rule and then by the infix rules of the operators following it.
+///
+/// Local variables live in stack slots, resolved at compile time. Global variables are resolved to the id of their
+/// name in a [SymbolTable] shared with the [Vm], so they are indexed rather than looked up by name at runtime.
+/// Functions and classes are not supported yet.
+public final class Compiler {
+    public record CompileError(Location loc, String lexeme, String message) {
+        @Override
+        public String toString() {
+            String at = lexeme == null ? "at end" : "at '" + lexeme + "'";
+            return String.format("Compile error [%d:%d] %s: %s", loc.line(), loc.offset(), at, message);
+        }
+    }
+
+    public record Result(Chunk chunk, List<CompileError> errors) {}
+
+    /// Binding power of operators, from loosest to tightest
+    private enum Precedence {
+        NONE, ASSIGNMENT, OR, AND, EQUALITY, COMPARISON, TERM, FACTOR, UNARY, CALL, PRIMARY;
+
+        Precedence next() {
+            return values()[ordinal() + 1];
+        }
+    }
+
+    /// Local variable in scope. The depth is -1 while its initialiser is being compiled
+    private record Local(String name, int depth) {}
+
+    private final TokenStream tokens;
+    private final SymbolTable globals;
+    private final Chunk chunk = new Chunk();
+    private final List<CompileError> errors = new ArrayList<>();
+    private final List<Local> locals = new ArrayList<>(); // locals in scope, indexed by stack slot
+
+    private Token previous; // token last consumed
+    private Token current; // next token, not consumed yet
+    private boolean panicMode = false; // true while skipping tokens after an error, to avoid cascading errors
+    private int scopeDepth = 0;
+    private int stackDepth = 0; // number of values on the stack at the current instruction
+
+    private Compiler(TokenStream tokens, SymbolTable globals) {
+        this.tokens = tokens;
+        this.globals = globals;
+    }
+
+    /// Compile a script
+    /// @param globals table assigning the ids of global variables, shared with the [Vm] running the script
+    public static Result compile(TokenStream tokens, SymbolTable globals) {
+        var compiler = new Compiler(tokens, globals);
+        compiler.advance();
+        while (!compiler.match(EOF)) compiler.declaration();
+        compiler.emit(Op.RETURN);
+        return new Result(compiler.chunk, List.copyOf(compiler.errors));
+    }
+
+    private void declaration() {
+        if (match(VAR)) varDeclaration();
+        else statement();
+
+        if (panicMode) synchronize();
+    }
+
+    private void varDeclaration() {
+        if (!(current.type() instanceof Ident ident)) {
+            error(current, "Expect variable name.");
+            return;
+        }
+        advance();
+        String name = ident.name();
+        if (scopeDepth > 0) declareLocal(name);
+
+        if (match(EQUAL)) expression();
+        else emit(Op.NIL);
+        consume(SEMICOLON, "Expect ';' after variable declaration.");
+
+        if (scopeDepth > 0) {
+            // the value is left on the stack, as the local's slot
+            locals.set(locals.size() - 1, new Local(name, scopeDepth));
+        } else {
+            emit(Op.DEFINE_GLOBAL, globalId(name));
+        }
+    }
+
+    private void declareLocal(String name) {
+        for (int i = locals.size() - 1; i >= 0 && locals.get(i).depth() >= scopeDepth; i--) {
+            if (locals.get(i).name().equals(name)) error(previous, "Already a variable with this name in this scope.");
+        }
+        locals.add(new Local(name, -1));
+    }
+
+    private void statement() {
+        if (match(PRINT)) {
+            expression();
+            consume(SEMICOLON, "Expect ';' after value.");
+            emit(Op.PRINT);
+        } else if (match(IF)) {
+            ifStatement();
+        } else if (match(WHILE)) {
+            whileStatement();
+        } else if (match(FOR)) {
+            forStatement();
+        } else if (match(LEFT_BRACE)) {
+            beginScope();
+            block();
+            endScope();
+        } else if (match(FUN) || match(RETURN)) {
+            error(previous, "Functions are not supported yet.");
+        } else if (match(CLASS)) {
+            error(previous, "Classes are not supported yet.");
+        } else {
+            expression();
+            consume(SEMICOLON, "Expect ';' after expression.");
+            emit(Op.POP);
+        }
+    }
+
+    private void block() {
+        while (!check(RIGHT_BRACE) && !check(EOF)) declaration();
+        consume(RIGHT_BRACE, "Expect '}' after block.");
+    }
+
+    private void beginScope() {
+        scopeDepth++;
+    }
+
+    private void endScope() {
+        scopeDepth--;
+        while (!locals.isEmpty() && locals.getLast().depth() > scopeDepth) {
+            emit(Op.POP);
+            locals.removeLast();
+        }
+    }
+
+    private void ifStatement() {
+        consume(LEFT_PAREN, "Expect '(' after 'if'.");
+        expression();
+        consume(RIGHT_PAREN, "Expect ')' after condition.");
+
+        int thenJump = emitJump(Op.JUMP_IF_FALSE);
+        int conditionDepth = stackDepth;
+        emit(Op.POP);
+        statement();
+
+        int elseJump = emitJump(Op.JUMP);
+        patchJump(thenJump);
+        // only reached by the conditional jump, with the condition still on the stack
+        stackDepth = conditionDepth;
+        emit(Op.POP);
+        if (match(ELSE)) statement();
+        patchJump(elseJump);
+    }
+
+    private void whileStatement() {
+        int loopStart = chunk.size();
+        consume(LEFT_PAREN, "Expect '(' after 'while'.");
+        expression();
+        consume(RIGHT_PAREN, "Expect ')' after condition.");
+
+        int exitJump = emitJump(Op.JUMP_IF_FALSE);
+        int conditionDepth = stackDepth;
+        emit(Op.POP);
+        statement();
+        emitLoop(loopStart);
+
+        patchJump(exitJump);
+        stackDepth = conditionDepth;
+        emit(Op.POP);
+    }
+
+    private void forStatement() {
+        beginScope();
+        consume(LEFT_PAREN, "Expect '(' after 'for'.");
+        if (match(SEMICOLON)) {
+            // no initialiser
+        } else if (match(VAR)) {
+            varDeclaration();
+        } else {
+            expression();
+            consume(SEMICOLON, "Expect ';' after expression.");
+            emit(Op.POP);
+        }
+
+        int loopStart = chunk.size();
+        int exitJump = -1;
+        int conditionDepth = 0;
+        if (!match(SEMICOLON)) {
+            expression();
+            consume(SEMICOLON, "Expect ';' after loop condition.");
+            exitJump = emitJump(Op.JUMP_IF_FALSE);
+            conditionDepth = stackDepth;
+            emit(Op.POP);
+        }
+
+        if (!match(RIGHT_PAREN)) {
+            // the increment is compiled before the body but runs after it, so jump over it and loop back to it
+            int bodyJump = emitJump(Op.JUMP);
+            int incrementStart = chunk.size();
+            expression();
+            emit(Op.POP);
+            consume(RIGHT_PAREN, "Expect ')' after for clauses.");
+
+            emitLoop(loopStart);
+            loopStart = incrementStart;
+            patchJump(bodyJump);
+        }
+
+        statement();
+        emitLoop(loopStart);
+
+        if (exitJump >= 0) {
+            patchJump(exitJump);
+            stackDepth = conditionDepth;
+            emit(Op.POP);
+        }
+        endScope();
+    }
+
+    private void expression() {
+        parsePrecedence(Precedence.ASSIGNMENT);
+    }
+
+    /// Compile an expression made of operators binding at least as tightly as `precedence`
+    private void parsePrecedence(Precedence precedence) {
+        advance();
+        boolean canAssign = precedence.compareTo(Precedence.ASSIGNMENT) <= 0;
+        prefix(canAssign);
+        if (panicMode) return;
+
+        while (precedence.compareTo(infixPrecedence(current.type())) <= 0) {
+            advance();
+            infix();
+        }
+
+        if (canAssign && match(EQUAL)) error(previous, "Invalid assignment target.");
+    }
+
+    /// Prefix rule of the token just consumed
+    private void prefix(boolean canAssign) {
+        switch (previous.type()) {
+            case NumLit n -> emitConstant(chunk.addConstant(n.value()));
+            case StrLit s -> emitConstant(chunk.addConstant(s.value()));
+            case Ident i -> variable(i.name(), canAssign);
+            case Symbol s -> {
+                switch (s) {
+                    case LEFT_PAREN -> {
+                        expression();
+                        consume(RIGHT_PAREN, "Expect ')' after expression.");
+                    }
+                    case MINUS, BANG -> {
+                        parsePrecedence(Precedence.UNARY);
+                        emit(s == MINUS ? Op.NEGATE : Op.NOT);
+                    }
+                    case NIL -> emit(Op.NIL);
+                    case TRUE -> emit(Op.TRUE);
+                    case FALSE -> emit(Op.FALSE);
+                    case THIS, SUPER -> error(previous, "Classes are not supported yet.");
+                    default -> error(previous, "Expect expression.");
+                }
+            }
+        }
+    }
+
+    /// Infix rule of the operator just consumed
+    private void infix() {
+        Symbol operator = (Symbol) previous.type();
+        switch (operator) {
+            case AND -> {
+                int endJump = emitJump(Op.JUMP_IF_FALSE);
+                emit(Op.POP);
+                parsePrecedence(Precedence.AND);
+                patchJump(endJump);
+            }
+            case OR -> {
+                int elseJump = emitJump(Op.JUMP_IF_FALSE);
+                int endJump = emitJump(Op.JUMP);
+                patchJump(elseJump);
+                emit(Op.POP);
+                parsePrecedence(Precedence.OR);
+                patchJump(endJump);
+            }
+            case LEFT_PAREN -> error(previous, "Functions are not supported yet.");
+            case DOT -> error(previous, "Classes are not supported yet.");
+            default -> {
+                // left associative: the right operand only takes operators binding more tightly
+                parsePrecedence(infixPrecedence(operator).next());
+                emit(switch (operator) {
+                    case EQUAL_EQUAL -> Op.EQUAL;
+                    case BANG_EQUAL -> Op.NOT_EQUAL;
+                    case GREATER -> Op.GREATER;
+                    case GREATER_EQUAL -> Op.GREATER_EQUAL;
+                    case LESS -> Op.LESS;
+                    case LESS_EQUAL -> Op.LESS_EQUAL;
+                    case PLUS -> Op.ADD;
+                    case MINUS -> Op.SUBTRACT;
+                    case STAR -> Op.MULTIPLY;
+                    case SLASH -> Op.DIVIDE;
+                    default -> throw new IllegalStateException("Not an infix operator: " + operator);
+                });
+            }
+        }
+    }
+
+    /// Precedence of a token used as an infix operator, or [Precedence#NONE] if it is not one
+    private static Precedence infixPrecedence(TokenType type) {
+        if (!(type instanceof Symbol s)) return Precedence.NONE;
+        return switch (s) {
+            case OR -> Precedence.OR;
+            case AND -> Precedence.AND;
+            case EQUAL_EQUAL, BANG_EQUAL -> Precedence.EQUALITY;
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> Precedence.COMPARISON;
+            case PLUS, MINUS -> Precedence.TERM;
+            case STAR, SLASH -> Precedence.FACTOR;
+            case LEFT_PAREN, DOT -> Precedence.CALL;
+            default -> Precedence.NONE;
+        };
+    }
+
+    private void variable(String name, boolean canAssign) {
+        int get, set, operand;
+        int slot = resolveLocal(name);
+        if (slot >= 0) {
+            get = Op.GET_LOCAL;
+            set = Op.SET_LOCAL;
+            operand = slot;
+        } else {
+            get = Op.GET_GLOBAL;
+            set = Op.SET_GLOBAL;
+            operand = globalId(name);
+        }
+
+        if (canAssign && match(EQUAL)) {
+            expression();
+            emit(set, operand);
+        } else {
+            emit(get, operand);
+        }
+    }
+
+    /// Stack slot of the innermost local variable with the given name, or -1 if it is global
+    private int resolveLocal(String name) {
+        for (int i = locals.size() - 1; i >= 0; i--) {
+            Local local = locals.get(i);
+            if (local.name().equals(name)) {
+                if (local.depth() < 0) error(previous, "Can't read local variable in its own initializer.");
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int globalId(String name) {
+        return globals.id(name, 0, name.length());
+    }
+
+    private void emit(int opcode) {
+        emit(opcode, 0);
+    }
+
+    private void emit(int opcode, int operand) {
+        chunk.write(opcode, operand, previous.loc().line());
+        stackDepth += Op.STACK_EFFECT[opcode];
+        chunk.updateMaxStack(stackDepth);
+    }
+
+    private void emitConstant(int index) {
+        if (index > Op.MAX_OPERAND) error(previous, "Too many constants in one chunk.");
+        emit(Op.CONSTANT, index);
+    }
+
+    /// Emit a forward jump, returning its index for [#patchJump] once the target is known
+    private int emitJump(int opcode) {
+        emit(opcode, 0);
+        return chunk.size() - 1;
+    }
+
+    /// Point the jump at index `jump` to the next instruction
+    private void patchJump(int jump) {
+        int offset = chunk.size() - jump - 1;
+        if (offset > Op.MAX_OPERAND) error(previous, "Too much code to jump over.");
+        chunk.patch(jump, offset);
+    }
+
+    private void emitLoop(int loopStart) {
+        int offset = loopStart - chunk.size() - 1;
+        if (offset < Op.MIN_OPERAND) error(previous, "Loop body too large.");
+        emit(Op.JUMP, offset);
+    }
+
+    private void advance() {
+        previous = current;
+        current = tokens.nextToken();
+    }
+
+    private boolean check(Symbol symbol) {
+        return current.type() == symbol;
+    }
+
+    private boolean match(Symbol symbol) {
+        if (!check(symbol)) return false;
+        advance();
+        return true;
+    }
+
+    private void consume(Symbol symbol, String message) {
+        if (check(symbol)) advance();
+        else error(current, message);
+    }
+
+    private void error(Token token, String message) {
+        if (panicMode) return;
+        panicMode = true;
+        String lexeme = token.type() == EOF ? null : token.lexeme();
+        errors.add(new CompileError(token.loc(), lexeme, message));
+    }
+
+    /// Skip tokens until a likely statement boundary, so that one mistake reports one error
+    private void synchronize() {
+        panicMode = false;
+        while (!check(EOF)) {
+            if (previous.type() == SEMICOLON) return;
+            if (current.type() instanceof Symbol s) {
+                switch (s) {
+                    case CLASS, FUN, VAR, FOR, IF, WHILE, PRINT, RETURN -> {
+                        return;
+                    }
+                    default -> {}
+                }
+            }
+            advance();
+        }
+    }
+}
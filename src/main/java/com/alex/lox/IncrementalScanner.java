@@ -0,0 +1,383 @@
+package com.alex.lox;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/// Keeps the scan of a source up to date as it is edited, rescanning only around each edit rather than the whole
+/// source. The result after every edit is identical to that of [Scanner#scanTokens()] on the edited source.
+///
+/// The start of a line which is not inside a string literal is a safe restart point: the scanner state there is
+/// fully determined by the line number. An edit is rescanned from the last such point before it, until the scan
+/// reaches a safe line start after the edit which was also a safe line start in the previous source. From there on
+/// the text and the scanner state are the same as before, so the previous tokens and errors are reused, shifted by
+/// the change in length and number of lines.
+///
+/// The cost of an edit is proportional to the size of the rescanned region, plus the distance from the previous
+/// edit, rather than to the size of the source. The text, tokens and errors are each held in a gap buffer whose gap
+/// follows the edits. Everything after the gap is stored relative to the end of the source (offsets from its
+/// length, lines from its last line), so an edit shifts it without it being rewritten. Results are views of this
+/// storage, only valid until the next edit.
+public class IncrementalScanner {
+    /// Characters past the end of an edit which are first scanned in search of a point to resynchronise at. The
+    /// window doubles whenever the scan runs out of it first
+    private static final int WINDOW = 256;
+
+    private final SymbolTable symbols = new SymbolTable();
+    private final Text text;
+    private int lineCount; // number of newlines in the text
+
+    // Gap buffer of the tokens, ending with EOF. Tokens after the gap store their offsets relative to the length of
+    // the text, and their line relative to lineCount
+    private TokenType[] types;
+    private int[] starts; // index into the text of the first char of each token's lexeme
+    private int[] ends; // index into the text one past the last char of each token's lexeme
+    private int[] lines;
+    private int[] columns;
+    private int gapStart, gapEnd;
+
+    // Errors before and after the gap. The latter are in reverse order, with lines relative to lineCount
+    private final List<Scanner.ScanError> headErrors = new ArrayList<>();
+    private final List<Scanner.ScanError> tailErrors = new ArrayList<>();
+
+    private int unterminatedString; // index of the opening quote of a string left unterminated at EOF, or -1
+
+    public IncrementalScanner(String source) {
+        text = new Text(source);
+        lineCount = text.countNewlines(0, source.length());
+        var scanner = new Scanner(source, symbols);
+        var packed = scanner.scanPacked();
+
+        int capacity = packed.size() + 16;
+        types = new TokenType[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        lines = new int[capacity];
+        columns = new int[capacity];
+        gapEnd = capacity;
+        insertTokens(packed, 0);
+        headErrors.addAll(packed.errors());
+        unterminatedString = scanner.unterminatedString();
+    }
+
+    /// Text of the current source. This copies the whole source
+    public String source() {
+        return text.toString();
+    }
+
+    /// Result of scanning the current source, as a view which is only valid until the next edit
+    public Scanner.ScanResult result() {
+        return new Scanner.ScanResult(new TokenView(), new ErrorView());
+    }
+
+    /// Replace `removed` characters at `offset` with `inserted`, and rescan the edited source
+    /// @return the result of scanning the edited source, as [#result()] gives it
+    public Scanner.ScanResult edit(int offset, int removed, String inserted) {
+        Objects.checkFromIndexSize(offset, removed, text.length());
+        int delta = inserted.length() - removed;
+        int lineDelta = countNewlines(inserted, 0, inserted.length()) - text.countNewlines(offset, offset + removed);
+
+        // restart from the start of the edited line, or of an earlier line if that is inside a string literal
+        int restart = text.lineStart(offset);
+        int first; // index of the first token which is rescanned
+        for (;;) {
+            if (unterminatedString >= 0 && restart > unterminatedString) {
+                restart = text.lineStart(unterminatedString);
+                continue;
+            }
+            first = firstEndingAfter(restart);
+            if (first == size() - 1 || start(first) >= restart) break;
+            restart = text.lineStart(start(first));
+        }
+
+        // the line of a token is the line its lexeme ends on, and there are only newlines between tokens
+        int restartLine = first == 0
+                ? text.countNewlines(0, restart)
+                : line(first - 1) + text.countNewlines(end(first - 1), restart);
+
+        // scan the edited text from the restart point, in a window of it which grows until the scan resynchronises
+        // with the previous one or reaches the end of the source
+        int editEnd = offset + inserted.length();
+        int resync = -1; // index into the edited source at which the scan resynchronised with the previous one
+        String window;
+        Scanner scanner;
+        PackedTokens rescanned;
+        for (int size = WINDOW; ; size *= 2) {
+            int windowEnd = (int) Math.min(text.length(), (long) offset + removed + size);
+            var sb = new StringBuilder(windowEnd - restart + inserted.length());
+            text.appendTo(sb, restart, offset);
+            sb.append(inserted);
+            text.appendTo(sb, offset + removed, windowEnd);
+            window = sb.toString();
+
+            scanner = new Scanner(window, symbols, 0, window.length(), restartLine, 0);
+            scanner.startPacked();
+            for (int p = scanner.scanLine(); p >= 0; p = scanner.scanLine()) {
+                // resynchronising at the very end would only reuse EOF, which the scan produces anyway
+                int edited = restart + p;
+                if (edited >= editEnd && edited < text.length() + delta && isSafeRestart(edited - delta)) {
+                    resync = edited;
+                    break;
+                }
+            }
+            if (resync >= 0 || windowEnd == text.length()) {
+                rescanned = scanner.finishPacked();
+                break;
+            }
+        }
+
+        // splice the rescanned tokens and errors between those before the restart point and those reused from after
+        // the resync point
+        int last = resync < 0 ? size() : firstEndingAfter(resync - delta);
+        int oldResyncLine = resync < 0 ? 0 : restartLine + countNewlines(window, 0, resync - restart) - lineDelta;
+
+        moveErrorGap(restartLine);
+        while (!tailErrors.isEmpty() && (resync < 0 || tailErrorLine(tailErrors.size() - 1) < oldResyncLine)) {
+            tailErrors.removeLast();
+        }
+        moveTokenGap(last);
+        Arrays.fill(types, first, last, null);
+        gapStart = first;
+
+        text.replace(offset, removed, inserted);
+        lineCount += lineDelta;
+        insertTokens(rescanned, restart);
+        headErrors.addAll(rescanned.errors());
+
+        if (resync < 0) unterminatedString = scanner.unterminatedString() < 0 ? -1 : restart + scanner.unterminatedString();
+        else if (unterminatedString >= 0) unterminatedString += delta;
+
+        return result();
+    }
+
+    /// Returns true if `p` is the start of a line in the previous source which is not inside a string literal
+    private boolean isSafeRestart(int p) {
+        if (p <= 0 || p > text.length() || text.charAt(p - 1) != '\n') return false;
+        if (unterminatedString >= 0 && p > unterminatedString) return false;
+        int token = firstEndingAfter(p);
+        return token == size() - 1 || start(token) >= p;
+    }
+
+    /// Index of the first token (other than EOF) whose lexeme ends after `p`, or the index of the EOF token
+    private int firstEndingAfter(int p) {
+        int lo = 0, hi = size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (end(mid) > p) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    private int size() {
+        return types.length - (gapEnd - gapStart);
+    }
+
+    /// Physical index of token `i` in the gap buffer
+    private int slot(int i) {
+        return i < gapStart ? i : i + gapEnd - gapStart;
+    }
+
+    private int start(int i) {
+        return i < gapStart ? starts[i] : starts[slot(i)] + text.length();
+    }
+
+    private int end(int i) {
+        return i < gapStart ? ends[i] : ends[slot(i)] + text.length();
+    }
+
+    private int line(int i) {
+        return i < gapStart ? lines[i] : lines[slot(i)] + lineCount;
+    }
+
+    private Token token(int i) {
+        return new Token(types[slot(i)], new Location(line(i), columns[slot(i)]));
+    }
+
+    /// Move the token gap to just before token `i`, converting the tokens moved across it
+    private void moveTokenGap(int i) {
+        // tokens are moved across the gap through its first slot
+        if (gapStart == gapEnd) growTokens(1);
+        int length = text.length();
+        while (gapStart > i) {
+            gapStart--;
+            gapEnd--;
+            moveToken(gapStart, gapEnd, -length, -lineCount);
+        }
+        while (gapStart < i) {
+            moveToken(gapEnd, gapStart, length, lineCount);
+            gapStart++;
+            gapEnd++;
+        }
+    }
+
+    private void moveToken(int from, int to, int offsetShift, int lineShift) {
+        types[to] = types[from];
+        starts[to] = starts[from] + offsetShift;
+        ends[to] = ends[from] + offsetShift;
+        lines[to] = lines[from] + lineShift;
+        columns[to] = columns[from];
+        types[from] = null;
+    }
+
+    /// Insert the tokens of a packed scan at the gap, offsetting their positions by `offset`
+    private void insertTokens(PackedTokens packed, int offset) {
+        if (gapEnd - gapStart < packed.size()) growTokens(packed.size());
+        for (int i = 0; i < packed.size(); i++) {
+            types[gapStart] = packed.type(i);
+            starts[gapStart] = packed.start(i) + offset;
+            ends[gapStart] = packed.start(i) + packed.length(i) + offset;
+            lines[gapStart] = packed.line(i);
+            columns[gapStart] = packed.column(i);
+            gapStart++;
+        }
+    }
+
+    private void growTokens(int needed) {
+        int tail = types.length - gapEnd;
+        int capacity = Math.max(types.length + (types.length >> 1), size() + needed + 16);
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        columns = Arrays.copyOf(columns, capacity);
+        System.arraycopy(types, gapEnd, types, capacity - tail, tail);
+        System.arraycopy(starts, gapEnd, starts, capacity - tail, tail);
+        System.arraycopy(ends, gapEnd, ends, capacity - tail, tail);
+        System.arraycopy(lines, gapEnd, lines, capacity - tail, tail);
+        System.arraycopy(columns, gapEnd, columns, capacity - tail, tail);
+        Arrays.fill(types, gapEnd, capacity - tail, null);
+        gapEnd = capacity - tail;
+    }
+
+    /// Move the error gap so that the errors before it are those on lines before `line`
+    private void moveErrorGap(int line) {
+        while (!headErrors.isEmpty() && headErrors.getLast().loc().line() >= line) {
+            tailErrors.add(shift(headErrors.removeLast(), -lineCount));
+        }
+        while (!tailErrors.isEmpty() && tailErrorLine(tailErrors.size() - 1) < line) {
+            headErrors.add(shift(tailErrors.removeLast(), lineCount));
+        }
+    }
+
+    private int tailErrorLine(int i) {
+        return tailErrors.get(i).loc().line() + lineCount;
+    }
+
+    private static Scanner.ScanError shift(Scanner.ScanError e, int lines) {
+        return new Scanner.ScanError(new Location(e.loc().line() + lines, e.loc().offset()), e.message(), e.length());
+    }
+
+    private static int countNewlines(String source, int from, int to) {
+        int count = 0;
+        for (int i = source.indexOf('\n', from, to); i >= 0; i = source.indexOf('\n', i + 1, to)) count++;
+        return count;
+    }
+
+    private class TokenView extends AbstractList<Token> {
+        @Override
+        public Token get(int index) {
+            Objects.checkIndex(index, size());
+            return token(index);
+        }
+
+        @Override
+        public int size() {
+            return IncrementalScanner.this.size();
+        }
+    }
+
+    private class ErrorView extends AbstractList<Scanner.ScanError> {
+        @Override
+        public Scanner.ScanError get(int index) {
+            Objects.checkIndex(index, size());
+            if (index < headErrors.size()) return headErrors.get(index);
+            return shift(tailErrors.get(tailErrors.size() - 1 - (index - headErrors.size())), lineCount);
+        }
+
+        @Override
+        public int size() {
+            return headErrors.size() + tailErrors.size();
+        }
+    }
+
+    /// Gap buffer of the source text, with its gap at the last edit
+    private static final class Text {
+        private char[] buf;
+        private int gapStart, gapEnd;
+
+        Text(String source) {
+            buf = new char[source.length() + 64];
+            source.getChars(0, source.length(), buf, 0);
+            gapStart = source.length();
+            gapEnd = buf.length;
+        }
+
+        int length() {
+            return buf.length - (gapEnd - gapStart);
+        }
+
+        char charAt(int i) {
+            return buf[i < gapStart ? i : i + gapEnd - gapStart];
+        }
+
+        /// Index of the start of the line `offset` is on
+        int lineStart(int offset) {
+            int i = offset;
+            while (i > 0 && charAt(i - 1) != '\n') i--;
+            return i;
+        }
+
+        int countNewlines(int from, int to) {
+            int count = 0;
+            for (int i = from; i < to; i++) if (charAt(i) == '\n') count++;
+            return count;
+        }
+
+        void appendTo(StringBuilder sb, int from, int to) {
+            if (from < gapStart) sb.append(buf, from, Math.min(to, gapStart) - from);
+            if (to > gapStart) {
+                int skip = gapEnd - gapStart;
+                int tailFrom = Math.max(from, gapStart);
+                sb.append(buf, tailFrom + skip, to - tailFrom);
+            }
+        }
+
+        /// Replace `removed` characters at `offset` with `inserted`, moving the gap there first
+        void replace(int offset, int removed, String inserted) {
+            if (offset < gapStart) {
+                int n = gapStart - offset;
+                System.arraycopy(buf, offset, buf, gapEnd - n, n);
+                gapStart -= n;
+                gapEnd -= n;
+            } else if (offset > gapStart) {
+                int n = offset - gapStart;
+                System.arraycopy(buf, gapEnd, buf, gapStart, n);
+                gapStart += n;
+                gapEnd += n;
+            }
+            gapEnd += removed;
+
+            if (gapEnd - gapStart < inserted.length()) {
+                int tail = buf.length - gapEnd;
+                int capacity = Math.max(buf.length + (buf.length >> 1), length() + inserted.length() + 64);
+                char[] grown = new char[capacity];
+                System.arraycopy(buf, 0, grown, 0, gapStart);
+                System.arraycopy(buf, gapEnd, grown, capacity - tail, tail);
+                buf = grown;
+                gapEnd = capacity - tail;
+            }
+            inserted.getChars(0, inserted.length(), buf, gapStart);
+            gapStart += inserted.length();
+        }
+
+        @Override
+        public String toString() {
+            var sb = new StringBuilder(length());
+            appendTo(sb, 0, length());
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.alex.lox;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/// Offsets at which the lines of a source start, for resolving a source offset to a [Location] on demand.
+///
+/// Lines are numbered from 0 and columns are offsets from the start of the line, both counted in chars. Resolving
+/// an offset is a binary search over the line starts, so a scan only needs to remember one `int` per line rather than
+/// a line and column per token.
+public final class LineIndex {
+    private int[] starts = new int[64]; // offset of the first char of each line, in increasing order
+    private int size = 1; // number of lines, the first one starting at 0
+
+    LineIndex() {}
+
+    /// Index the lines of the given source
+    public static LineIndex of(CharSequence source) {
+        var index = new LineIndex();
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') index.add(i + 1);
+        }
+        return index;
+    }
+
+    /// Record the start of the next line, which must come after those recorded so far
+    void add(int lineStart) {
+        if (size == starts.length) starts = Arrays.copyOf(starts, size * 2);
+        starts[size++] = lineStart;
+    }
+
+    /// Forget all lines but the first, keeping the storage for indexing another source
+    void clear() {
+        size = 1;
+    }
+
+    public int lineCount() {
+        return size;
+    }
+
+    /// Offset of the first char of the given line
+    public int lineStart(int line) {
+        return starts[Objects.checkIndex(line, size)];
+    }
+
+    /// Line the char at `offset` is on
+    public int line(int offset) {
+        if (offset < 0) throw new IndexOutOfBoundsException("Negative offset " + offset);
+        int lo = 0, hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= offset) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /// Line and column of the char at `offset`
+    public Location locate(int offset) {
+        int line = line(offset);
+        return new Location(line, offset - starts[line]);
+    }
+}
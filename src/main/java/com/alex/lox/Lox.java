@@ -3,61 +3,259 @@ package com.alex.lox;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+import java.util.List;
 
 class Lox {
     static boolean hadError = false;
+    static boolean hadRuntimeError = false;
+    private static TokenWriter.Format dumpFormat = null; // print the tokens of scripts in this format instead of running them
+    private static Path daemonSocket = null; // socket of the daemon to send scripts to, instead of running them here
+    private static boolean train = false; // run the AOT training workload over the given corpus
+    /// Errors after which a scan is aborted, from the `jlox.maxErrors` system property
+    static final int MAX_ERRORS = Integer.getInteger("jlox.maxErrors", 100);
 
     static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            IO.println("run jlox [script.jl]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        int first = 0;
+        for (; first < args.length && args[first].startsWith("--"); first++) {
+            switch (args[first]) {
+                case "--tokens" -> dumpFormat = TokenWriter.Format.HUMAN;
+                case "--tokens=tsv" -> dumpFormat = TokenWriter.Format.TSV;
+                case "--train" -> train = true;
+                case String arg when arg.startsWith("--daemon=") -> {
+                    runDaemon(Paths.get(arg.substring("--daemon=".length())));
+                    return;
+                }
+                case String arg when arg.startsWith("--connect=") ->
+                        daemonSocket = Paths.get(arg.substring("--connect=".length()));
+                default -> usage();
+            }
+        }
+        String[] paths = Arrays.copyOfRange(args, first, args.length);
+
+        if (train) {
+            if (paths.length == 0) usage();
+            runTraining(paths);
+        } else if (daemonSocket != null) {
+            if (paths.length != 1) usage();
+            runRemote(paths[0]);
+        } else if (paths.length > 1 || (paths.length == 1 && Files.isDirectory(Paths.get(paths[0])))) {
+            // batches are only scanned, there are no tokens to print per file
+            if (dumpFormat != null) usage();
+            runBatch(paths);
+        } else if (paths.length == 1) {
+            runFile(paths[0]);
         } else {
             runPrompt();
         }
     }
 
-    /// Run a file
+    private static void usage() {
+        IO.println("run jlox [--tokens[=tsv]] [--connect=<socket>] [script.jl | <script.jl]");
+        IO.println("run jlox <script.jl | directory>...");
+        IO.println("run jlox --daemon=<socket>");
+        IO.println("run jlox --train <corpus.lox | directory>...");
+        System.exit(64);
+    }
+
+    /// Run a file, or print its tokens with `--tokens` (`--tokens=tsv` for one tab separated record per token).
+    /// Regular files are memory-mapped and scanned as UTF-8 bytes (using the Vector API if the `jlox.vectorize`
+    /// system property is set and it was built in, see [ByteSearch]); anything else (pipes, devices) is streamed
+    /// through a reader using the default charset.
+    ///
+    /// If the `jlox.cacheDir` system property names a directory, scan results of regular files are cached there and
+    /// reused for as long as the file is unchanged. If `jlox.pipeline` is set, regular files are scanned on a separate
+    /// thread, concurrently with compiling.
+    ///
+    /// Scans stop after `jlox.maxErrors` errors (100 by default), counting each run of unexpected characters as one
     private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        Path file = Paths.get(path);
+        var vm = new Vm(System.out);
+        String cacheDir = System.getProperty("jlox.cacheDir");
+        if (cacheDir != null && Files.isRegularFile(file)) {
+            run(TokenStream.of(new TokenCache(Paths.get(cacheDir), MAX_ERRORS).scan(file)), vm);
+        } else if (Files.isRegularFile(file) && Boolean.getBoolean("jlox.pipeline")) {
+            PipelinedScanner.Source source = () ->
+                    Utf8Scanner.open(file, Boolean.getBoolean("jlox.vectorize")).withMaxErrors(MAX_ERRORS);
+            try (var scanner = new PipelinedScanner(source)) {
+                run(scanner, vm);
+            }
+        } else if (Files.isRegularFile(file)) {
+            try (var scanner = Utf8Scanner.open(file, Boolean.getBoolean("jlox.vectorize")).withMaxErrors(MAX_ERRORS)) {
+                run(scanner, vm);
+            }
+        } else {
+            try (var scanner = new StreamingScanner(new InputStreamReader(Files.newInputStream(file), Charset.defaultCharset())).withMaxErrors(MAX_ERRORS)) {
+                run(scanner, vm);
+            }
+        }
 
         if (hadError) System.exit(65);
+        if (hadRuntimeError) System.exit(70);
     }
 
-    /// Start interactive prompt
+    /// Serve scripts sent by `--connect` clients on the given socket, until the process is stopped
+    private static void runDaemon(Path socket) throws IOException {
+        var daemon = new LoxDaemon(socket);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException e) {
+                // the socket file is left behind, and replaced by the next daemon
+            }
+        }));
+        IO.println("Listening on " + socket);
+        daemon.serve();
+    }
+
+    /// Have the daemon listening on `--connect`'s socket run a script (or print its tokens), and exit with its status
+    private static void runRemote(String path) throws IOException {
+        String command = dumpFormat == null ? "run" : dumpFormat == TokenWriter.Format.TSV ? "tokens=tsv" : "tokens";
+        var reply = LoxDaemon.send(daemonSocket, command, Files.readAllBytes(Paths.get(path)));
+        IO.print(reply.output());
+        System.out.flush();
+        System.exit(reply.status());
+    }
+
+    /// Run the AOT cache training workload over the given scripts and directories of scripts
+    private static void runTraining(String[] args) throws IOException {
+        List<Path> corpus = Arrays.stream(args).map(Paths::get).toList();
+        long startTime = System.nanoTime();
+        int sources;
+        try {
+            sources = Training.run(corpus);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while training");
+        }
+        if (sources == 0) {
+            IO.println("No Lox sources found");
+            System.exit(64);
+        }
+        IO.println(String.format("Trained on %d sources, %d times each, in %.3f s",
+                sources, Training.ITERATIONS, (System.nanoTime() - startTime) / 1e9));
+    }
+
+    /// Scan many files and directories concurrently, reporting the errors of each file in the order given and a
+    /// summary of the whole batch. Exits with 74 if any file could not be read, or 65 if any had scan errors
+    private static void runBatch(String[] args) throws IOException {
+        List<Path> paths = Arrays.stream(args).map(Paths::get).toList();
+        long startTime = System.nanoTime();
+        List<BatchScanner.FileResult> results;
+        try {
+            results = new BatchScanner().scan(paths);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning");
+        }
+        long elapsed = System.nanoTime() - startTime;
+
+        if (results.isEmpty()) {
+            IO.println("No Lox sources found");
+            System.exit(64);
+        }
+
+        long bytes = 0, tokens = 0;
+        int failed = 0, withErrors = 0;
+        for (var result : results) {
+            bytes += result.bytes();
+            tokens += result.tokens();
+            if (result.failure() != null) {
+                failed++;
+                String cannot = result.failure() instanceof IOException ? "Cannot read file: " : "Cannot scan file: ";
+                IO.println(result.file() + ": " + cannot + result.failure());
+            } else if (!result.errors().isEmpty()) {
+                withErrors++;
+                for (var e : result.errors()) IO.println(result.file() + ": " + formatScanErr(e));
+            }
+        }
+
+        double seconds = elapsed / 1e9;
+        IO.println(String.format("Scanned %d files (%d bytes, %d tokens) in %.3f s, %.1f MB/s: %d with errors, %d unreadable",
+                results.size(), bytes, tokens, seconds, bytes / 1e6 / seconds, withErrors, failed));
+
+        if (failed > 0) System.exit(74);
+        if (withErrors > 0) System.exit(65);
+    }
+
+    /// Start interactive prompt. Global variables persist from one statement to the next. A statement may span
+    /// several lines: input is read until it is not inside a string literal and has no brackets left open (or a blank
+    /// line ends it anyway), and each line is only scanned once, resuming from where the previous one left off
     private static void runPrompt() throws IOException {
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
+        var vm = new Vm(System.out);
+        var scanner = new ResumableScanner().withMaxErrors(MAX_ERRORS);
 
         for (;;) {
-            IO.println("> ");
+            IO.println(scanner.isEmpty() ? "> " : ".. ");
             String line = reader.readLine();
             if (line == null) break;
-            run(line);
+            scanner.feed(line + "\n");
+            boolean inString = scanner.continuation() == ResumableScanner.Continuation.STRING;
+            if (!scanner.isStopped() && (inString || scanner.openBrackets() > 0 && !line.isBlank())) continue;
+
+            run(TokenStream.of(scanner.finish()), vm);
             hadError = false;
+            hadRuntimeError = false;
+        }
+    }
+
+    /// Run source code, scanning it with the calling thread's reusable scanner
+    static void run(String source) {
+        run(TokenStream.of(Scanner.local(source).withMaxErrors(MAX_ERRORS).scanTokens()), new Vm(System.out));
+    }
+
+    /// Compile the tokens of a script and run it on the given VM, or print them with `--tokens`
+    private static void run(TokenStream scanner, Vm vm) {
+        if (dumpFormat != null) {
+            printTokens(scanner);
+            return;
+        }
+
+        switch (run(scanner, vm, System.out)) {
+            case 65 -> hadError = true;
+            case 70 -> hadRuntimeError = true;
         }
     }
 
-    /// Run source code
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        var scanResult = scanner.scanTokens();
+    /// Compile the tokens of a script and run it on the given VM, printing errors to `out`. Scripts with scan or
+    /// compile errors are not run
+    /// @return the exit status: 0 on success, 65 if there were scan or compile errors or 70 if the script failed
+    static int run(TokenStream scanner, Vm vm, PrintStream out) {
+        var result = Compiler.compile(scanner, vm.globals());
+        for (var e : scanner.errors()) out.println(formatScanErr(e));
+        for (var e : result.errors()) out.println(e);
+        if (!scanner.errors().isEmpty() || !result.errors().isEmpty()) return 65;
 
-        // Print any observed errors
-        IO.print(scanResult.errors().stream()
-                .map(Lox::formatScanErr)
-                .collect(Collectors.joining("\n")) +
-                (scanResult.errors().isEmpty() ? "" : "\n"));
+        try {
+            vm.execute(result.chunk());
+        } catch (Vm.RuntimeError e) {
+            out.println(String.format("Runtime error [%d]: %s", e.line(), e.getMessage()));
+            return 70;
+        }
+        return 0;
+    }
 
-        IO.println((scanResult.tokens().stream()
-                .map(Token::lexeme)
-                .collect(Collectors.joining("·"))));
+    /// Write the tokens to standard output as they are scanned, so the tokens are never held in memory as a whole;
+    /// errors are written once the source has been fully scanned
+    private static void printTokens(TokenStream scanner) {
+        System.out.flush();
+        try {
+            int errors = new TokenWriter(Channels.newChannel(System.out), dumpFormat).dump(scanner);
+            if (errors > 0) hadError = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.flush();
     }
 
     static String formatScanErr(Scanner.ScanError e) {
@@ -0,0 +1,246 @@
+package com.alex.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/// Long-running server which scans and runs scripts sent to it over a Unix domain socket, so that clients skip JVM
+/// startup and run on code the JIT has already compiled.
+///
+/// Every connection carries one request and is served on a virtual thread of its own. The protocol is plain text, so
+/// any client able to half-close a Unix socket will do (e.g. `{ echo run; cat script.jl; } | nc -UN lox.sock`):
+///
+/// - the request is a command line, `run`, `tokens` or `tokens=tsv`, followed by the UTF-8 source up to the end of
+///   the client's output
+/// - the reply is the exit status on a line of its own, followed by the output the command would have printed when
+///   run by [Lox] on the same source
+///
+/// Each script runs on a fresh [Vm], so no state is shared between requests. One request can't hold up or exhaust
+/// the daemon either: scripts are stopped after [#MAX_INSTRUCTIONS] instructions, output is cut off after
+/// [#MAX_OUTPUT_SIZE] bytes, and whatever goes wrong while serving a request is replied to with status 70. Only a
+/// bounded number of requests are served at once, so that many clients can't exhaust it together: the others wait
+/// to be accepted. Should the daemon run out of memory all the same, it stops serving rather than carry on in an
+/// unknown state.
+public final class LoxDaemon implements AutoCloseable {
+    /// Largest request accepted, in bytes
+    public static final int MAX_REQUEST_SIZE = 1 << 26;
+    /// Most output replied to a request, in bytes
+    public static final int MAX_OUTPUT_SIZE = 1 << 26;
+    /// Instructions a script may run in loops, see [Vm#withInstructionLimit]
+    public static final long MAX_INSTRUCTIONS = 1L << 30;
+    /// Requests served at once by default. Requests are CPU bound, so serving more at once would not serve them any
+    /// sooner, only hold more of them in memory
+    public static final int MAX_CONCURRENT_REQUESTS = Runtime.getRuntime().availableProcessors();
+    private static final int BACKLOG = 1024; // connections waiting to be accepted before new ones are refused
+
+    /// Reply to a request: the exit status of the command and its output
+    public record Reply(int status, String output) {}
+
+    private final Path socket;
+    private final ServerSocketChannel server;
+    private final Semaphore requests; // permits for the requests served at once
+    private volatile VirtualMachineError failure; // error the daemon stopped serving on, or null
+
+    /// Listen on the given socket file, serving up to [#MAX_CONCURRENT_REQUESTS] requests at once. A file left
+    /// behind by a daemon which is no longer running is replaced
+    /// @throws IOException if the socket cannot be bound, e.g. because another daemon is listening on it
+    public LoxDaemon(Path socket) throws IOException {
+        this(socket, MAX_CONCURRENT_REQUESTS);
+    }
+
+    /// Listen on the given socket file, serving up to `maxConcurrentRequests` requests at once
+    /// @throws IOException if the socket cannot be bound, e.g. because another daemon is listening on it
+    public LoxDaemon(Path socket, int maxConcurrentRequests) throws IOException {
+        if (maxConcurrentRequests < 1) throw new IllegalArgumentException("maxConcurrentRequests must be positive");
+        this.socket = socket;
+        this.requests = new Semaphore(maxConcurrentRequests);
+        if (Files.exists(socket) && !isListening(socket)) Files.delete(socket);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket), BACKLOG);
+    }
+
+    /// Accept and serve connections until the daemon is closed
+    /// @throws VirtualMachineError if serving a request failed with one, such as an [OutOfMemoryError], after
+    /// closing the daemon and completing the other requests being served
+    public void serve() throws IOException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (server.isOpen()) {
+                // connections are left waiting to be accepted until a request being served completes
+                requests.acquireUninterruptibly();
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (IOException e) {
+                    requests.release();
+                    if (!server.isOpen()) break;
+                    throw e;
+                }
+                executor.execute(() -> {
+                    try {
+                        handle(client);
+                    } catch (VirtualMachineError e) {
+                        failure = e;
+                        closeQuietly();
+                    } finally {
+                        requests.release();
+                    }
+                });
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /// Stop accepting connections and remove the socket file. Requests being served are completed
+    @Override
+    public void close() throws IOException {
+        server.close();
+        Files.deleteIfExists(socket);
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // the socket file is left behind, and replaced by the next daemon
+        }
+    }
+
+    private static void handle(SocketChannel client) {
+        try (client) {
+            byte[] request = Channels.newInputStream(client).readNBytes(MAX_REQUEST_SIZE + 1);
+            var output = new BoundedOutput();
+            int status;
+            String stopped = null; // why the request was stopped short, replied after its output
+            try (var out = new PrintStream(output, false, StandardCharsets.UTF_8)) {
+                status = execute(request, out);
+            } catch (OutputLimitExceeded e) {
+                status = 70;
+                stopped = "Output larger than " + MAX_OUTPUT_SIZE + " bytes, stopped";
+            } catch (RuntimeException | Error e) {
+                // the client gets a reply whatever went wrong with its request, but the daemon can't be trusted to go
+                // on once the JVM is failing (running out of memory, say), as every request shares the heap. Only a
+                // stack overflow is confined to the thread of the request
+                if (e instanceof VirtualMachineError && !(e instanceof StackOverflowError)) throw e;
+                status = 70;
+                stopped = "Internal error: " + e;
+            }
+
+            byte[] header = (status + "\n").getBytes(StandardCharsets.US_ASCII);
+            String trailer = stopped == null ? "" : (output.endsWithNewline() ? "" : "\n") + stopped + "\n";
+            var reply = new ByteBuffer[] {ByteBuffer.wrap(header), ByteBuffer.wrap(output.toByteArray()),
+                    ByteBuffer.wrap(trailer.getBytes(StandardCharsets.UTF_8))};
+            while (reply[0].hasRemaining() || reply[1].hasRemaining() || reply[2].hasRemaining()) client.write(reply);
+        } catch (IOException e) {
+            // the client went away, there is no one left to reply to
+        }
+    }
+
+    /// Execute a request, printing its output to `out`
+    /// @return the exit status
+    private static int execute(byte[] request, PrintStream out) throws IOException {
+        if (request.length > MAX_REQUEST_SIZE) {
+            out.println("Request larger than " + MAX_REQUEST_SIZE + " bytes");
+            return 64;
+        }
+
+        int newline = 0;
+        while (newline < request.length && request[newline] != '\n') newline++;
+        String command = new String(request, 0, newline, StandardCharsets.UTF_8);
+        String source = newline < request.length
+                ? new String(request, newline + 1, request.length - newline - 1, StandardCharsets.UTF_8)
+                : "";
+
+        TokenWriter.Format format;
+        switch (command) {
+            case "run" -> {
+                var tokens = TokenStream.of(new Scanner(source).withMaxErrors(Lox.MAX_ERRORS).scanTokens());
+                return Lox.run(tokens, new Vm(out).withInstructionLimit(MAX_INSTRUCTIONS), out);
+            }
+            case "tokens" -> format = TokenWriter.Format.HUMAN;
+            case "tokens=tsv" -> format = TokenWriter.Format.TSV;
+            default -> {
+                out.println("Unknown command: " + command);
+                return 64;
+            }
+        }
+
+        out.flush();
+        var tokens = TokenStream.of(new Scanner(source).withMaxErrors(Lox.MAX_ERRORS).scanTokens());
+        int errors = new TokenWriter(Channels.newChannel(out), format).dump(tokens);
+        return errors > 0 ? 65 : 0;
+    }
+
+    /// Send a request to the daemon listening on `socket` and wait for its reply
+    /// @param command `run`, `tokens` or `tokens=tsv`
+    public static Reply send(Path socket, String command, byte[] source) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            var request = new ByteBuffer[] {
+                    ByteBuffer.wrap((command + "\n").getBytes(StandardCharsets.UTF_8)), ByteBuffer.wrap(source)};
+            while (request[0].hasRemaining() || request[1].hasRemaining()) channel.write(request);
+            channel.shutdownOutput();
+
+            InputStream in = Channels.newInputStream(channel);
+            byte[] reply = in.readAllBytes();
+            int newline = 0;
+            while (newline < reply.length && reply[newline] != '\n') newline++;
+            if (newline == reply.length) throw new IOException("Malformed reply from daemon on " + socket);
+            int status = Integer.parseInt(new String(reply, 0, newline, StandardCharsets.US_ASCII));
+            return new Reply(status, new String(Arrays.copyOfRange(reply, newline + 1, reply.length), StandardCharsets.UTF_8));
+        }
+    }
+
+    /// Thrown by [BoundedOutput] once the output of a request is too large
+    private static final class OutputLimitExceeded extends RuntimeException {
+        OutputLimitExceeded() {
+            super(null, null, false, false);
+        }
+    }
+
+    /// Output buffer of a request, which keeps the first [#MAX_OUTPUT_SIZE] bytes and throws [OutputLimitExceeded]
+    /// past them. The exception is unchecked so that [PrintStream], which swallows `IOException`s, passes it on
+    private static final class BoundedOutput extends ByteArrayOutputStream {
+        private boolean full = false; // true once the limit has been hit, after which writes are dropped
+
+        @Override
+        public synchronized void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (full) return;
+            if (len > MAX_OUTPUT_SIZE - count) {
+                super.write(b, off, MAX_OUTPUT_SIZE - count);
+                full = true;
+                throw new OutputLimitExceeded();
+            }
+            super.write(b, off, len);
+        }
+
+        synchronized boolean endsWithNewline() {
+            return count == 0 || buf[count - 1] == '\n';
+        }
+    }
+
+    private static boolean isListening(Path socket) {
+        try (var ignored = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.alex.lox;
+
+/// Instruction set of the [Vm].
+///
+/// Every instruction is a single `int`: the opcode in the low 8 bits and a signed 24-bit operand in the rest. The
+/// operand is a constant pool index, a stack slot, a global variable id or a relative jump offset, depending on the
+/// opcode, and unused by the others.
+final class Op {
+    static final int CONSTANT = 0; // push constant operand
+    static final int NIL = 1;
+    static final int TRUE = 2;
+    static final int FALSE = 3;
+    static final int POP = 4;
+    static final int GET_LOCAL = 5; // push stack slot operand
+    static final int SET_LOCAL = 6; // store the top of the stack in stack slot operand, leaving it on the stack
+    static final int GET_GLOBAL = 7; // push global operand
+    static final int DEFINE_GLOBAL = 8; // pop into global operand
+    static final int SET_GLOBAL = 9; // store the top of the stack in an already defined global, leaving it on the stack
+    static final int EQUAL = 10;
+    static final int NOT_EQUAL = 11;
+    static final int GREATER = 12;
+    static final int GREATER_EQUAL = 13;
+    static final int LESS = 14;
+    static final int LESS_EQUAL = 15;
+    static final int ADD = 16;
+    static final int SUBTRACT = 17;
+    static final int MULTIPLY = 18;
+    static final int DIVIDE = 19;
+    static final int NOT = 20;
+    static final int NEGATE = 21;
+    static final int PRINT = 22;
+    static final int JUMP = 23; // jump by offset operand
+    static final int JUMP_IF_FALSE = 24; // jump by offset operand if the top of the stack is falsey, leaving it on the stack
+    static final int RETURN = 25;
+
+    /// Largest and smallest operands which fit in an instruction
+    static final int MAX_OPERAND = (1 << 23) - 1, MIN_OPERAND = -(1 << 23);
+
+    /// Change in the depth of the stack caused by each opcode
+    static final int[] STACK_EFFECT = {
+            1, 1, 1, 1, -1, // CONSTANT .. POP
+            1, 0, 1, -1, 0, // GET_LOCAL .. SET_GLOBAL
+            -1, -1, -1, -1, -1, -1, // EQUAL .. LESS_EQUAL
+            -1, -1, -1, -1, 0, 0, // ADD .. NEGATE
+            -1, 0, 0, 0 // PRINT .. RETURN
+    };
+
+    private Op() {}
+
+    static int encode(int opcode, int operand) {
+        return operand << 8 | opcode;
+    }
+
+    static int opcode(int instruction) {
+        return instruction & 0xFF;
+    }
+
+    static int operand(int instruction) {
+        return instruction >> 8;
+    }
+}
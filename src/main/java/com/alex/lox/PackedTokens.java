@@ -0,0 +1,200 @@
+package com.alex.lox;
+
+import java.nio.CharBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import static com.alex.lox.TokenType.*;
+
+/// Compact alternative to [Scanner.ScanResult], storing the scanned tokens as a struct of primitive arrays (kind,
+/// source start, length, line and column) instead of a list of [Token] objects.
+///
+/// No per-token objects are allocated while scanning: [Token]s, [TokenType]s and lexeme strings are only
+/// materialised when asked for, and lexemes and string literal contents are exposed as zero-copy [CharSequence]
+/// views over the source.
+///
+/// Tokens scanned with [Scanner#scanOffsets()] carry no line and column at all, only their source offset: locations
+/// are resolved through a [LineIndex] when asked for.
+///
+/// Token kinds are the ordinal of the [Symbol] for symbols and keywords, and [#IDENT], [#STRING] or [#NUMBER] for
+/// identifiers and literals.
+public final class PackedTokens {
+    private static final Symbol[] SYMBOLS = Symbol.values();
+
+    public static final int IDENT = SYMBOLS.length;
+    public static final int STRING = IDENT + 1;
+    public static final int NUMBER = IDENT + 2;
+
+    /// Largest number of tokens storage is reserved for up front, about 1 MB of arrays
+    static final int MAX_INITIAL_CAPACITY = 1 << 16;
+
+    private String source;
+    private final SymbolTable symbols;
+    private final LineIndex lineIndex; // index locations are resolved with, or null if they are stored per token
+    private byte[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines; // null if locations are resolved with the line index
+    private int[] columns; // null if locations are resolved with the line index
+    private int size = 0;
+    private List<Scanner.ScanError> errors = List.of();
+
+    PackedTokens(String source, SymbolTable symbols, int initialCapacity) {
+        this(source, symbols, initialCapacity, null);
+    }
+
+    /// @param initialCapacity expected number of tokens, capped at [#MAX_INITIAL_CAPACITY]. Storage grows by half
+    ///                        whenever it is full, so it is never much larger than the tokens need
+    /// @param lineIndex index to resolve locations with, or null to store the line and column of every token
+    PackedTokens(String source, SymbolTable symbols, int initialCapacity, LineIndex lineIndex) {
+        this.source = source;
+        this.symbols = symbols;
+        this.lineIndex = lineIndex;
+        int capacity = Math.clamp(initialCapacity, 16, MAX_INITIAL_CAPACITY);
+        kinds = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        if (lineIndex == null) {
+            lines = new int[capacity];
+            columns = new int[capacity];
+        }
+    }
+
+    /// Add a token. The line and column are ignored if locations are resolved with the line index
+    void add(int kind, int start, int length, int line, int column) {
+        if (size == kinds.length) grow();
+        kinds[size] = (byte) kind;
+        starts[size] = start;
+        lengths[size] = length;
+        if (lines != null) {
+            lines[size] = line;
+            columns[size] = column;
+        }
+        size++;
+    }
+
+    /// Remove all tokens and errors, keeping the storage (and line index, which is cleared) for scanning another source
+    void reset(String source) {
+        this.source = source;
+        size = 0;
+        errors = List.of();
+        if (lineIndex != null) lineIndex.clear();
+    }
+
+    void setErrors(List<Scanner.ScanError> errors) {
+        this.errors = List.copyOf(errors);
+    }
+
+    private void grow() {
+        int capacity = kinds.length + (kinds.length >> 1);
+        kinds = Arrays.copyOf(kinds, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        if (lines != null) {
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+        }
+    }
+
+    /// Number of tokens, including the trailing `EOF` token
+    public int size() {
+        return size;
+    }
+
+    public int kind(int i) {
+        return kinds[Objects.checkIndex(i, size)];
+    }
+
+    /// Offset into the source of the first character of the token's lexeme
+    public int start(int i) {
+        return starts[Objects.checkIndex(i, size)];
+    }
+
+    /// Length of the token's lexeme in the source, including the quotes of string literals
+    public int length(int i) {
+        return lengths[Objects.checkIndex(i, size)];
+    }
+
+    public int line(int i) {
+        Objects.checkIndex(i, size);
+        return lines != null ? lines[i] : lineIndex.line(starts[i]);
+    }
+
+    public int column(int i) {
+        Objects.checkIndex(i, size);
+        return columns != null ? columns[i] : starts[i] - lineIndex.lineStart(lineIndex.line(starts[i]));
+    }
+
+    /// Returns true if token `i` is the given symbol or keyword
+    public boolean is(int i, Symbol symbol) {
+        return kind(i) == symbol.ordinal();
+    }
+
+    /// View of the token's lexeme as it appears in the source
+    public CharSequence lexeme(int i) {
+        return CharBuffer.wrap(source, start(i), start(i) + length(i));
+    }
+
+    /// View of the contents of a string literal token, without the quote marks
+    public CharSequence stringValue(int i) {
+        if (kind(i) != STRING) throw new IllegalArgumentException("Token " + i + " is not a string literal");
+        return CharBuffer.wrap(source, starts[i] + 1, starts[i] + lengths[i] - 1);
+    }
+
+    public Location location(int i) {
+        Objects.checkIndex(i, size);
+        return lines != null ? new Location(lines[i], columns[i]) : lineIndex.locate(starts[i]);
+    }
+
+    /// Index of the lines of the source if locations are resolved on demand, otherwise null
+    public LineIndex lineIndex() {
+        return lineIndex;
+    }
+
+    /// Token type of token `i`. Identifiers are interned in the scanner's [SymbolTable], so every occurrence of a
+    /// name materialises to the same [Ident] instance
+    public TokenType type(int i) {
+        return typeOf(kind(i), source, symbols, starts[i], starts[i] + lengths[i]);
+    }
+
+    public Token token(int i) {
+        return new Token(type(i), location(i));
+    }
+
+    /// List view of the tokens, materialising each [Token] when it is accessed
+    public List<Token> tokens() {
+        return new TokenList();
+    }
+
+    public List<Scanner.ScanError> errors() {
+        return errors;
+    }
+
+    /// Materialise all tokens into a regular [Scanner.ScanResult]
+    public Scanner.ScanResult toScanResult() {
+        return new Scanner.ScanResult(List.copyOf(tokens()), errors);
+    }
+
+    /// Materialise the token type of the given kind whose lexeme spans `start` to `end` in the source
+    static TokenType typeOf(int kind, String source, SymbolTable symbols, int start, int end) {
+        if (kind == IDENT) return symbols.intern(source, start, end);
+        if (kind == STRING) return new StrLit(source.substring(start + 1, end - 1));
+        if (kind == NUMBER) return new NumLit(ScannerUtils.parseNumber(source, start, end));
+        return SYMBOLS[kind];
+    }
+
+    private final class TokenList extends AbstractList<Token> implements RandomAccess {
+        @Override
+        public Token get(int index) {
+            return token(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
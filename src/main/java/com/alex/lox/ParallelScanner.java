@@ -0,0 +1,153 @@
+package com.alex.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/// Scans large sources concurrently, by splitting them into chunks at newline boundaries and scanning the chunks on
+/// a [ForkJoinPool]. The result is identical to that of [Scanner#scanTokens()] on the whole source, except that
+/// identifiers are interned per chunk rather than across the whole source.
+///
+/// Every chunk starts at the beginning of a line, so it can be scanned knowing only its starting line number (found
+/// by counting newlines in a first parallel pass) - except when the newline before it is inside a multi-line string
+/// literal. Chunks are therefore scanned speculatively, assuming they do not start inside a string; when stitching
+/// the results together in order, a chunk whose predecessor ended in an unterminated string is rescanned from that
+/// string's opening quote. The rescan runs on to the end of the chunk the string closes in, however many chunks it
+/// spans, so that a long string is scanned again only once, and the scans of the chunks it covers are cancelled
+/// (so most never start) rather than waited for.
+public class ParallelScanner {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private int maxErrors = ScanErrors.UNLIMITED;
+
+    public ParallelScanner() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /// @param chunkSize minimum number of characters in each chunk
+    public ParallelScanner(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("Chunk size must be positive");
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /// Abort scans once they have found `maxErrors` errors, as [Scanner#withMaxErrors] does. Each chunk is scanned
+    /// with the same limit, so none collects more errors than the whole scan may; a source with more errors than the
+    /// limit is then scanned again sequentially, as only that finds exactly where its scan stops
+    /// @return this scanner
+    public ParallelScanner withMaxErrors(int maxErrors) {
+        if (maxErrors < 1) throw new IllegalArgumentException("maxErrors must be positive: " + maxErrors);
+        this.maxErrors = maxErrors;
+        return this;
+    }
+
+    /// Results of scanning one slice of the source, a range of whole lines
+    private record Slice(List<Token> tokens, List<Scanner.ScanError> errors, int unterminatedString, Location unterminatedStringLoc) {}
+
+    public Scanner.ScanResult scanTokens(String source) {
+        int[] bounds = chunkBounds(source);
+        int chunks = bounds.length - 1;
+        if (chunks == 1) return new Scanner(source).withMaxErrors(maxErrors).scanTokens();
+
+        // every line in a chunk ends with a newline, so the first line of each chunk is the running count of them
+        int[] lines = new int[chunks];
+        List<Integer> newlines = invokeAll(chunks, i -> () -> countNewlines(source, bounds[i], bounds[i + 1]));
+        for (int i = 1; i < chunks; i++) lines[i] = lines[i - 1] + newlines.get(i - 1);
+
+        List<Future<Slice>> scans = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            int chunk = i;
+            scans.add(pool.submit(() -> scan(source, bounds[chunk], bounds[chunk + 1], lines[chunk], 0)));
+        }
+
+        try {
+            List<Token> tokens = new ArrayList<>();
+            List<Scanner.ScanError> errors = new ArrayList<>();
+            Slice previous = null;
+            for (int i = 0; i < chunks; i++) {
+                Slice chunk;
+                int last = i; // last chunk the slice covers
+                if (previous != null && previous.unterminatedString() >= 0) {
+                    // the string continues into this chunk: drop its error and rescan from the opening quote to the end
+                    // of the chunk holding the closing quote, or of the source if there is none
+                    errors.removeLast();
+                    int quote = source.indexOf('"', previous.unterminatedString() + 1);
+                    while (last < chunks - 1 && (quote < 0 || quote >= bounds[last + 1])) last++;
+                    for (int j = i; j <= last; j++) scans.get(j).cancel(false);
+                    var loc = previous.unterminatedStringLoc();
+                    chunk = scan(source, previous.unterminatedString(), bounds[last + 1], loc.line(), loc.offset());
+                } else {
+                    chunk = result(scans.get(i));
+                }
+
+                // every chunk but the last ends with an EOF token which is not part of the result
+                tokens.addAll(last == chunks - 1 ? chunk.tokens() : chunk.tokens().subList(0, chunk.tokens().size() - 1));
+                errors.addAll(chunk.errors());
+                if (errors.size() > maxErrors) return new Scanner(source).withMaxErrors(maxErrors).scanTokens();
+                previous = chunk;
+                i = last;
+            }
+
+            return new Scanner.ScanResult(List.copyOf(tokens), List.copyOf(errors));
+        } finally {
+            // scans left over when stopping early are of no use
+            for (Future<Slice> scan : scans) scan.cancel(false);
+        }
+    }
+
+    /// Split the source into chunks of at least `chunkSize` characters, each ending just after a newline (or at the
+    /// end of the source)
+    /// @return chunk boundaries, from 0 up to and including the length of the source
+    private int[] chunkBounds(String source) {
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int bound = 0;
+        while (bound < source.length()) {
+            int newline = source.length() - bound > chunkSize ? source.indexOf('\n', bound + chunkSize - 1) : -1;
+            bound = newline < 0 ? source.length() : newline + 1;
+            bounds.add(bound);
+        }
+        if (bounds.size() == 1) bounds.add(0);
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private Slice scan(String source, int from, int to, int line, int lineOffset) {
+        var scanner = new Scanner(source, new SymbolTable(), from, to, line, lineOffset).withMaxErrors(maxErrors);
+        var result = scanner.scanTokens();
+        return new Slice(result.tokens(), result.errors(), scanner.unterminatedString(), scanner.unterminatedStringLoc());
+    }
+
+    private static int countNewlines(String source, int from, int to) {
+        int count = 0;
+        for (int i = source.indexOf('\n', from, to); i >= 0; i = source.indexOf('\n', i + 1, to)) count++;
+        return count;
+    }
+
+    /// Run one task per chunk on the pool, returning their results in chunk order
+    private <T> List<T> invokeAll(int chunks, IntFunction<Callable<T>> task) {
+        List<Callable<T>> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) tasks.add(task.apply(i));
+
+        List<T> results = new ArrayList<>(chunks);
+        for (Future<T> f : pool.invokeAll(tasks)) results.add(result(f));
+        return results;
+    }
+
+    /// Wait for the result of a chunk's task
+    private static <T> T result(Future<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Chunk scan failed", e.getCause());
+        }
+    }
+}
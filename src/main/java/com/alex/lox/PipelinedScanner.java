@@ -0,0 +1,135 @@
+package com.alex.lox;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import static com.alex.lox.TokenType.Symbol.EOF;
+
+/// Runs a scanner on a thread of its own, so that the consumer of the tokens works concurrently with scanning
+/// rather than after it.
+///
+/// The scanning thread publishes tokens in batches into a bounded [SpscRing]. Batching keeps the synchronisation
+/// cost per token low, and the bound applies backpressure: a scanner running ahead of its consumer blocks once
+/// [#DEFAULT_CAPACITY] batches are waiting, instead of buffering the whole source.
+///
+/// The scanner is opened on the scanning thread, so scanners confined to the thread which created them (like
+/// [Utf8Scanner#open]) can be used. Scan errors are only handed over with the final batch, so [#errors()] is empty
+/// until the `EOF` token has been returned.
+///
+/// Scans are reported to Flight Recorder and to [ScanMetrics] by the scanner the source opens (e.g. one
+/// [Utf8Scanner#withMetrics] was called on), so their duration is that of the scanning thread alone.
+public class PipelinedScanner implements TokenStream, AutoCloseable {
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /// Creates the scanner to run, on the scanning thread
+    @FunctionalInterface
+    public interface Source {
+        TokenStream open() throws IOException;
+    }
+
+    /// Tokens published together. The final batch ends with the `EOF` token and carries the errors, or the failure
+    /// which stopped the scan: a [RuntimeException] or an [Error]
+    private record Batch(Token[] tokens, int size, List<Scanner.ScanError> errors, Throwable failure) {}
+
+    private final SpscRing<Batch> ring;
+    private final int batchSize;
+    private final Thread producer;
+
+    private Batch batch; // batch tokens are currently taken from
+    private int next = 0; // index in batch of the next token
+    private List<Scanner.ScanError> errors = List.of();
+
+    public PipelinedScanner(Source source) {
+        this(source, DEFAULT_BATCH_SIZE, DEFAULT_CAPACITY);
+    }
+
+    /// @param batchSize number of tokens published at a time
+    /// @param capacity number of batches which may be waiting to be consumed
+    public PipelinedScanner(Source source, int batchSize, int capacity) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be positive");
+        this.ring = new SpscRing<>(capacity);
+        this.batchSize = batchSize;
+        this.producer = Thread.ofPlatform()
+                .name("lox-scanner")
+                .daemon()
+                .start(() -> produce(source));
+    }
+
+    private void produce(Source source) {
+        try {
+            TokenStream scanner = source.open();
+            try {
+                Token[] tokens = new Token[batchSize];
+                int size = 0;
+                for (;;) {
+                    Token token = scanner.nextToken();
+                    tokens[size++] = token;
+                    if (token.type() == EOF) {
+                        ring.put(new Batch(tokens, size, scanner.errors(), null));
+                        return;
+                    }
+                    if (size == batchSize) {
+                        ring.put(new Batch(tokens, size, null, null));
+                        tokens = new Token[batchSize];
+                        size = 0;
+                    }
+                }
+            } finally {
+                if (scanner instanceof AutoCloseable closeable) closeable.close();
+            }
+        } catch (InterruptedException e) {
+            // closed by the consumer, nobody is waiting for the rest
+        } catch (Throwable e) {
+            // whatever stopped the scan, the consumer must be handed something or it waits forever
+            var failure = e instanceof IOException io ? new UncheckedIOException(io)
+                    : e instanceof RuntimeException || e instanceof Error ? e
+                    : new IllegalStateException("Failed to close the scanner", e);
+            try {
+                ring.put(new Batch(new Token[0], 0, null, failure));
+            } catch (InterruptedException ignored) {
+                // closed by the consumer
+            }
+        }
+    }
+
+    /// Take the next token, waiting for the scanning thread if it has not been scanned yet
+    /// @throws UncheckedIOException if the source could not be read
+    @Override
+    public Token nextToken() {
+        if (batch == null || next == batch.size()) {
+            // once the scan is over, keep handing out the final EOF token or rethrowing the failure
+            if (batch != null && batch.failure() != null) throw rethrow(batch.failure());
+            if (batch != null && batch.errors() != null) return batch.tokens()[batch.size() - 1];
+            try {
+                batch = ring.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for tokens"));
+            }
+            next = 0;
+            if (batch.failure() != null) throw rethrow(batch.failure());
+            if (batch.errors() != null) errors = batch.errors();
+        }
+        return batch.tokens()[next++];
+    }
+
+    /// Rethrow an [Error] which stopped the scan as is, or return the [RuntimeException] to throw
+    private static RuntimeException rethrow(Throwable failure) {
+        if (failure instanceof Error error) throw error;
+        return (RuntimeException) failure;
+    }
+
+    @Override
+    public List<Scanner.ScanError> errors() {
+        return errors;
+    }
+
+    /// Stop the scanning thread, if it is still running
+    @Override
+    public void close() {
+        producer.interrupt();
+    }
+}
@@ -0,0 +1,215 @@
+package com.alex.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.alex.lox.TokenType.Symbol.*;
+
+/// Scanner for input arriving in chunks, such as the lines of a REPL, which suspends at the end of each chunk and
+/// resumes from there when the next one is [fed][#feed], instead of scanning everything received so far again.
+///
+/// A chunk may end inside a token. The [#continuation] says what the scan is suspended in:
+/// - inside a string literal, whose text is kept until its closing quote arrives and it is scanned in one go
+/// - inside a comment, which is skipped up to the next newline
+/// - at the end of a token which the next chunk may extend (an identifier, keyword, number or operator), which is held
+///   back and scanned again with the next chunk
+///
+/// Each chunk is therefore searched or scanned once, plus the string literal or token held back from the previous
+/// chunk, so scanning is linear in the length of the input however it is split. Once all the input has been fed,
+/// [#finish] gives the same tokens and errors as [Scanner#scanTokens()] on the whole input, except that runs of
+/// unexpected characters are not coalesced across chunks, and the maximum number of errors applies to each chunk.
+/// Once a chunk has gone over it, the scan [stops][#isStopped] there, as [Scanner]'s would: the tokens end at that
+/// point, and the rest of the input is ignored.
+public final class ResumableScanner {
+    /// What the scan is suspended in at the end of the input fed so far
+    public enum Continuation { NONE, STRING, COMMENT, TOKEN }
+
+    private final Scanner scanner;
+    private final List<Token> tokens = new ArrayList<>(); // completed tokens, without EOF
+    private final List<Scanner.ScanError> errors = new ArrayList<>();
+    private Continuation continuation = Continuation.NONE;
+    private final StringBuilder pending = new StringBuilder(); // text of the string literal or token held back
+    private int line = 0; // line the scan resumes on: that of the held back text, or the end of the input
+    private int lineOffset = 0; // line offset the scan resumes at
+    private int openBrackets = 0; // parentheses and braces opened by the tokens so far and not yet closed
+    private boolean stopped = false; // whether a chunk went over the maximum number of errors, ending the scan
+
+    public ResumableScanner() {
+        this(new SymbolTable());
+    }
+
+    /// Create a scanner interning identifiers into an existing symbol table, so that names are shared across inputs
+    public ResumableScanner(SymbolTable symbols) {
+        scanner = new Scanner("", symbols);
+    }
+
+    /// Limit the errors of each chunk, as [Scanner#withMaxErrors] does
+    /// @return this scanner
+    public ResumableScanner withMaxErrors(int maxErrors) {
+        scanner.withMaxErrors(maxErrors);
+        return this;
+    }
+
+    /// Scan the next chunk of input, up to the point it has to be suspended at
+    /// @return the tokens completed by this chunk
+    public List<Token> feed(String chunk) {
+        if (stopped) return List.of();
+        int completed = tokens.size();
+        switch (continuation) {
+            case STRING -> {
+                if (chunk.indexOf('"') < 0) {
+                    pending.append(chunk);
+                    return List.of();
+                }
+                scan(pending.append(chunk).toString(), 0);
+            }
+            case COMMENT -> {
+                int newline = chunk.indexOf('\n');
+                if (newline < 0) {
+                    lineOffset += chunk.length();
+                    return List.of();
+                }
+                lineOffset += newline;
+                scan(chunk, newline);
+            }
+            case TOKEN -> scan(pending.append(chunk).toString(), 0);
+            case NONE -> scan(chunk, 0);
+        }
+        return List.copyOf(tokens.subList(completed, tokens.size()));
+    }
+
+    /// What the scan is suspended in
+    public Continuation continuation() {
+        return continuation;
+    }
+
+    /// Location the scan resumes from: that of the string literal or token held back, if any, or else of the end of
+    /// the input
+    public Location location() {
+        return new Location(line, lineOffset);
+    }
+
+    /// Returns true if a chunk went over the maximum number of errors, so that no more input is scanned until the
+    /// next reset. [#location] is then that of the error which stopped the scan
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /// Number of parentheses and braces opened by the tokens so far and not yet closed, or a negative number if more
+    /// have been closed than opened. Input with brackets still open is usually continued by the next chunk
+    public int openBrackets() {
+        return openBrackets;
+    }
+
+    /// Returns true if nothing has been fed since the scanner was created or [reset][#reset]
+    public boolean isEmpty() {
+        return tokens.isEmpty() && errors.isEmpty() && continuation == Continuation.NONE && line == 0 && lineOffset == 0;
+    }
+
+    /// End the input, completing any string literal or token held back
+    /// @return all tokens and errors of the input since the last reset
+    public Scanner.ScanResult finish() {
+        switch (continuation) {
+            case STRING, TOKEN -> {
+                var packed = scanner.reset(pending.toString(), 0, line, lineOffset).scanPacked();
+                for (int i = 0; i < packed.size(); i++) tokens.add(packed.token(i));
+                errors.addAll(packed.errors());
+            }
+            case NONE, COMMENT -> tokens.add(new Token(EOF, new Location(line, lineOffset)));
+        }
+        var result = new Scanner.ScanResult(List.copyOf(tokens), List.copyOf(errors));
+        reset();
+        return result;
+    }
+
+    /// Discard all input, to start scanning another
+    /// @return this scanner
+    public ResumableScanner reset() {
+        tokens.clear();
+        errors.clear();
+        continuation = Continuation.NONE;
+        pending.setLength(0);
+        line = 0;
+        lineOffset = 0;
+        openBrackets = 0;
+        stopped = false;
+        return this;
+    }
+
+    /// Scan `text` from index `from`, at the current line and line offset, and suspend at its end
+    private void scan(String text, int from) {
+        var packed = scanner.reset(text, from, line, lineOffset).scanPacked();
+        int size = packed.size() - 1; // tokens without EOF
+        var end = packed.location(size);
+        var scanErrors = packed.errors();
+        pending.setLength(0);
+
+        int string = scanner.unterminatedString();
+        int held = string < 0 && !scanner.aborted() ? heldBack(packed, size, text.length()) : size;
+        if (string >= 0) {
+            // the string literal is the last thing scanned, and not an error until the input ends: drop its error, or
+            // the summary error it went over the maximum number of errors with, as the scan would have gone on
+            continuation = Continuation.STRING;
+            pending.append(text, string, text.length());
+            line = scanner.unterminatedStringLoc().line();
+            lineOffset = scanner.unterminatedStringLoc().offset();
+            scanErrors = scanErrors.subList(0, scanner.errorsBeforeUnterminatedString());
+        } else if (scanner.aborted()) {
+            // the scan skipped the rest of the text, which is neither continued nor resumed from
+            continuation = Continuation.NONE;
+            stopped = true;
+            line = end.line();
+            lineOffset = end.offset();
+        } else if (held < size) {
+            continuation = Continuation.TOKEN;
+            pending.append(text, packed.start(held), text.length());
+            line = packed.line(held);
+            lineOffset = packed.column(held);
+        } else {
+            int tail = size > 0 ? packed.start(size - 1) + packed.length(size - 1) : from;
+            continuation = inComment(text, tail) ? Continuation.COMMENT : Continuation.NONE;
+            line = end.line();
+            lineOffset = end.offset();
+        }
+
+        for (int i = 0; i < held; i++) {
+            if (packed.is(i, LEFT_PAREN) || packed.is(i, LEFT_BRACE)) openBrackets++;
+            else if (packed.is(i, RIGHT_PAREN) || packed.is(i, RIGHT_BRACE)) openBrackets--;
+            tokens.add(packed.token(i));
+        }
+        errors.addAll(scanErrors);
+    }
+
+    /// Index of the first of the `size` tokens to hold back because the next chunk may extend it, or `size` if none
+    /// is. Only tokens ending at `length`, the end of the text, may be extended
+    private static int heldBack(PackedTokens packed, int size, int length) {
+        if (size == 0 || packed.start(size - 1) + packed.length(size - 1) != length) return size;
+        int last = size - 1;
+        int kind = packed.kind(last);
+
+        // a number followed by a dot may be continued by its fractional part
+        if (kind == DOT.ordinal()) {
+            boolean afterNumber = last > 0 && packed.kind(last - 1) == PackedTokens.NUMBER
+                    && packed.start(last - 1) + packed.length(last - 1) == packed.start(last);
+            return afterNumber ? last - 1 : size;
+        }
+        if (kind == PackedTokens.IDENT || kind == PackedTokens.NUMBER || isExtensible(kind)) return last;
+        return size;
+    }
+
+    /// Returns true if a symbol of the given kind could be the start of a longer token: a keyword, the start of a
+    /// two character operator, or a slash which may start a comment
+    private static boolean isExtensible(int kind) {
+        if (kind >= PackedTokens.IDENT) return false;
+        var symbol = TokenType.Symbol.values()[kind];
+        return symbol == BANG || symbol == EQUAL || symbol == LESS || symbol == GREATER || symbol == SLASH
+                || Character.isLetter(symbol.lexeme().charAt(0));
+    }
+
+    /// Returns true if the text ends inside a comment, given that there are no tokens from `tail` on. Only whitespace,
+    /// comments and unexpected characters are left there, so the text ends in a comment if the last line of it starts one
+    private static boolean inComment(String text, int tail) {
+        int lastLine = Math.max(tail, text.lastIndexOf('\n') + 1);
+        return text.indexOf("//", lastLine) >= 0;
+    }
+}
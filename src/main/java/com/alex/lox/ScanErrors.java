@@ -0,0 +1,116 @@
+package com.alex.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/// Errors of a scan, collected in a bounded amount of memory however bad the input.
+///
+/// Runs of consecutive unexpected characters, as found in binary or wrongly encoded files, are coalesced into a single
+/// error spanning the whole run, whose message quotes at most [#QUOTED_CHARS] of them. Once the maximum number of
+/// errors has been collected, the next error aborts the scan instead: a summary error is added in its place, and the
+/// scanner stops there as if it had reached the end of the source.
+final class ScanErrors {
+    static final int UNLIMITED = Integer.MAX_VALUE;
+    /// Most characters of a run quoted in its error message
+    static final int QUOTED_CHARS = 16;
+
+    private final List<Scanner.ScanError> errors = new ArrayList<>();
+    private int maxErrors = UNLIMITED;
+    private boolean aborted = false;
+
+    // Run of unexpected characters which may still be extended, not added to errors yet
+    private Location runLoc; // location of the first character, or null if there is no run
+    private final StringBuilder runChars = new StringBuilder(); // quoted characters
+    private int runLength; // number of characters
+    private long runEnd; // source offset just past the last character
+
+    /// Set the number of errors after which the scan is aborted
+    void setMaxErrors(int maxErrors) {
+        if (maxErrors < 1) throw new IllegalArgumentException("maxErrors must be positive: " + maxErrors);
+        this.maxErrors = maxErrors;
+    }
+
+    /// Add the unexpected character `c` spanning `offset` to `end` in the source to the current run, if it directly
+    /// follows it. Offsets may be in any unit, as long as they are consistent
+    /// @return false if there is no run for the character to extend
+    boolean extendRun(long offset, long end, char c) {
+        if (runLoc == null || offset != runEnd) return false;
+        // quote surrogate pairs whole
+        char last = runChars.charAt(runChars.length() - 1);
+        if (runChars.length() < QUOTED_CHARS || Character.isHighSurrogate(last) && Character.isLowSurrogate(c))
+            runChars.append(c);
+        runLength++;
+        runEnd = end;
+        return true;
+    }
+
+    /// Start a new run with the unexpected character `c` at `loc`, ending at source offset `end`
+    void unexpected(Location loc, long end, char c) {
+        if (!admit(loc)) return;
+        runLoc = loc;
+        runChars.setLength(0);
+        runChars.append(c);
+        runLength = 1;
+        runEnd = end;
+    }
+
+    void add(Location loc, String message) {
+        if (admit(loc)) errors.add(new Scanner.ScanError(loc, message));
+    }
+
+    /// Add an error the scan can't go on after, whatever the maximum number of errors, and abort it
+    void abort(Location loc, String message) {
+        admit(loc);
+        if (aborted) return;
+        errors.add(new Scanner.ScanError(loc, message));
+        aborted = true;
+    }
+
+    /// Returns true once the maximum number of errors has been exceeded, and the scan should stop
+    boolean aborted() {
+        return aborted;
+    }
+
+    /// Number of errors so far
+    int size() {
+        return errors.size() + (runLoc != null ? 1 : 0);
+    }
+
+    /// Errors so far, in source order
+    List<Scanner.ScanError> list() {
+        if (runLoc == null) return List.copyOf(errors);
+        List<Scanner.ScanError> list = new ArrayList<>(errors.size() + 1);
+        list.addAll(errors);
+        list.add(runError());
+        return List.copyOf(list);
+    }
+
+    /// Remove all errors, to collect those of another scan
+    void clear() {
+        errors.clear();
+        runLoc = null;
+        aborted = false;
+    }
+
+    /// End the current run, and make room for one more error at `loc` unless the maximum has been reached, in which
+    /// case the scan is aborted
+    /// @return true if the error may be added
+    private boolean admit(Location loc) {
+        if (runLoc != null) {
+            errors.add(runError());
+            runLoc = null;
+        }
+        if (aborted) return false;
+        if (errors.size() < maxErrors) return true;
+
+        errors.add(new Scanner.ScanError(loc, "Too many errors, scanning stopped after " + maxErrors));
+        aborted = true;
+        return false;
+    }
+
+    private Scanner.ScanError runError() {
+        if (runLength == 1) return new Scanner.ScanError(runLoc, "Unexpected character: " + runChars);
+        String more = runLength > runChars.length() ? "... (" + runLength + " in total)" : "";
+        return new Scanner.ScanError(runLoc, "Unexpected characters: " + runChars + more, runLength);
+    }
+}
@@ -0,0 +1,31 @@
+package com.alex.lox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/// Flight Recorder event for one scan of a whole source, by a [Scanner], [Utf8Scanner] or [StreamingScanner]. Disabled
+/// unless a recording enables `com.alex.lox.Scan`, in which case it costs a check per scan rather than per token
+@Name("com.alex.lox.Scan")
+@Label("Scan")
+@Category("Lox")
+@Description("Scan of a source into tokens")
+@StackTrace(false)
+final class ScanEvent extends Event {
+    @Label("Characters")
+    @Description("Characters scanned, or bytes for UTF-8 sources")
+    long chars;
+
+    @Label("Tokens")
+    int tokens;
+
+    @Label("Errors")
+    int errors;
+
+    @Label("Packed")
+    @Description("Whether the tokens were scanned into packed storage")
+    boolean packed;
+}
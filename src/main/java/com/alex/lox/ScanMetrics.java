@@ -0,0 +1,121 @@
+package com.alex.lox;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/// Aggregated statistics of the scans reported to it: the number of scans, characters, tokens of each kind and
+/// errors, and a histogram of scan durations. Attach it to scanners with [Scanner#withMetrics] (or the `withMetrics`
+/// of [Utf8Scanner] and [StreamingScanner]); one instance may be shared by scanners on any number of threads.
+///
+/// Token kinds are those of [PackedTokens]: the ordinal of a [TokenType.Symbol], or [PackedTokens#IDENT],
+/// [PackedTokens#STRING] or [PackedTokens#NUMBER].
+///
+/// Durations are counted in power of two buckets: bucket `i` counts scans which took from `2^i` up to (but
+/// excluding) `2^(i+1)` nanoseconds, with scans under 1ns counted in bucket 0.
+public final class ScanMetrics {
+    public static final int KINDS = PackedTokens.NUMBER + 1;
+    public static final int BUCKETS = Long.SIZE - 1;
+
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder chars = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final AtomicLongArray tokens = new AtomicLongArray(KINDS); // tokens scanned, indexed by kind
+    private final AtomicLongArray durations = new AtomicLongArray(BUCKETS); // scans in each duration bucket
+
+    /// Record a completed scan
+    /// @param tokenCounts number of tokens of each kind produced by the scan
+    void record(long chars, long nanos, int[] tokenCounts, int errors) {
+        scans.increment();
+        this.chars.add(chars);
+        this.errors.add(errors);
+        this.nanos.add(nanos);
+        for (int kind = 0; kind < KINDS; kind++) {
+            if (tokenCounts[kind] != 0) tokens.addAndGet(kind, tokenCounts[kind]);
+        }
+        durations.incrementAndGet(bucket(nanos));
+    }
+
+    public long scans() {
+        return scans.sum();
+    }
+
+    /// Number of characters scanned, counting bytes for [Utf8Scanner]s
+    public long chars() {
+        return chars.sum();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    /// Total time spent scanning, in nanoseconds
+    public long nanos() {
+        return nanos.sum();
+    }
+
+    /// Number of tokens of the given kind scanned, including `EOF` tokens
+    public long tokens(int kind) {
+        return tokens.get(kind);
+    }
+
+    public long tokens(TokenType.Symbol symbol) {
+        return tokens(symbol.ordinal());
+    }
+
+    /// Total number of tokens scanned, including `EOF` tokens
+    public long tokens() {
+        long total = 0;
+        for (int kind = 0; kind < KINDS; kind++) total += tokens.get(kind);
+        return total;
+    }
+
+    /// Average scanning throughput, in characters per second
+    public double charsPerSecond() {
+        long nanos = nanos();
+        return nanos == 0 ? 0 : chars() * 1e9 / nanos;
+    }
+
+    /// Number of scans in each duration bucket
+    public long[] durationHistogram() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) histogram[i] = durations.get(i);
+        return histogram;
+    }
+
+    /// Smallest duration bucket bound (in nanoseconds) which at least the given fraction of scans took less than
+    public long durationPercentile(double fraction) {
+        if (fraction < 0 || fraction > 1) throw new IllegalArgumentException("Not a fraction: " + fraction);
+        long[] histogram = durationHistogram();
+        long total = 0;
+        for (long count : histogram) total += count;
+
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen > 0 && seen >= fraction * total) return i == BUCKETS - 1 ? Long.MAX_VALUE : 2L << i;
+        }
+        return 0;
+    }
+
+    /// Kind of the given token type
+    static int kind(TokenType type) {
+        return switch (type) {
+            case TokenType.Symbol s -> s.ordinal();
+            case TokenType.Ident _ -> PackedTokens.IDENT;
+            case TokenType.StrLit _ -> PackedTokens.STRING;
+            case TokenType.NumLit _ -> PackedTokens.NUMBER;
+        };
+    }
+
+    private static int bucket(long nanos) {
+        return nanos <= 1 ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d scans, %d chars, %d tokens, %d errors, %.1f Mchars/s, p50 < %dns, p99 < %dns",
+                scans(), chars(), tokens(), errors(), charsPerSecond() / 1e6,
+                durationPercentile(0.5), durationPercentile(0.99));
+    }
+}
@@ -0,0 +1,52 @@
+package com.alex.lox;
+
+/// A scan in progress by one of the scanners handing out tokens one at a time ([Utf8Scanner], [StreamingScanner]),
+/// reported to Flight Recorder as a [ScanEvent] and to the [ScanMetrics], if any, once it ends.
+///
+/// Those scanners keep no token storage to count tokens by kind in after the scan, as [Scanner] does, so tokens are
+/// counted as they are produced; by kind only when metrics are attached. The duration of a scan driven by
+/// [TokenStream#nextToken()] runs from the first token to `EOF`, so it includes the time the caller spends between
+/// tokens.
+final class ScanRecorder {
+    private final ScanEvent event = new ScanEvent();
+    private final ScanMetrics metrics; // metrics the scan is reported to, or null
+    private final long startTime;
+    private final int[] tokenCounts; // tokens of each kind, only counted if metrics are attached
+    private int tokens = 0;
+    private boolean ended = false;
+
+    ScanRecorder(ScanMetrics metrics) {
+        this.metrics = metrics;
+        this.tokenCounts = metrics != null ? new int[ScanMetrics.KINDS] : null;
+        event.begin();
+        this.startTime = metrics != null ? System.nanoTime() : 0;
+    }
+
+    /// Count a token of the given [PackedTokens] kind
+    void count(int kind) {
+        tokens++;
+        if (tokenCounts != null) tokenCounts[kind]++;
+    }
+
+    /// Count a token of the given type
+    void count(TokenType type) {
+        tokens++;
+        if (tokenCounts != null) tokenCounts[ScanMetrics.kind(type)]++;
+    }
+
+    /// End the scan and report it, unless it has already ended
+    /// @param chars number of characters (or bytes, for byte sources) scanned
+    void end(long chars, int errors, boolean packed) {
+        if (ended) return;
+        ended = true;
+        event.end();
+        if (event.shouldCommit()) {
+            event.chars = chars;
+            event.tokens = tokens;
+            event.errors = errors;
+            event.packed = packed;
+            event.commit();
+        }
+        if (metrics != null) metrics.record(chars, System.nanoTime() - startTime, tokenCounts, errors);
+    }
+}
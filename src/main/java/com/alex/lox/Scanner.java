@@ -9,26 +9,132 @@ import static com.alex.lox.ScannerUtils.*;
 import static com.alex.lox.TokenType.Symbol.*;
 
 /// Scanner for the Lox interpreter. The tokens of this language are found in [com.alex.lox.TokenType]
+///
+/// A scanner can be [reset][#reset] with a new source and scan again, reusing its token and error lists, packed token
+/// storage and symbol table, so that scanning many small inputs (such as REPL lines) reaches a steady state where
+/// almost nothing is allocated per scan other than the results themselves. [#local] gives each thread such a scanner.
 public class Scanner {
-    public record ScanError(Location loc, String message) {
+    /// An error at `loc`, spanning `length` characters of the source
+    public record ScanError(Location loc, String message, int length) {
+        public ScanError(Location loc, String message) {
+            this(loc, message, 1);
+        }
+
         @Override
         public String toString() {
             return String.format("Scan error [%d:%d]: %s", loc.line(), loc.offset(), message);
         }
     }
 
-    private final String source;
+    private static final ThreadLocal<Scanner> LOCAL = ThreadLocal.withInitial(() -> new Scanner(""));
+    /// Distinct identifiers the symbol table of a thread's [local][#local] scanner may hold before it is replaced
+    static final int MAX_LOCAL_SYMBOLS = 1 << 16;
+
+    private String source;
+    private int end; // index into source one past the last char to scan
+    private SymbolTable symbols;
     private final List<Token> tokens = new ArrayList<>();
-    private final List<ScanError> errors = new ArrayList<>();
+    private final ScanErrors errors = new ScanErrors();
+    private PackedTokens packed; // packed token storage, if scanning with scanPacked
+    private PackedTokens spare; // packed token storage of the scan before the last reset, reused by the next packed scan
+    private LineIndex lineIndex; // index of line starts, if scanning with scanOffsets
+    private ScanMetrics metrics; // metrics scans are reported to, or null
 
     private int start = 0; // index into source to the first char in the current lexeme being scanned
     private int current = 0; // index into source to the character currently being considered
-    private int line = 0; // line number we are currently on
-    private int curentTokenStartLineOffset = 0; // line offset of the start of the current token, used for error reporting
-    private int lineOffset = 0; // offset into the current line, used for error reporting
+    private int line = 0; // line number we are currently on, not kept up to date when scanning with a line index
+    private int lineStart = 0; // index into source that offsets into the current line are counted from
+    private int unterminatedString = -1; // index of the opening quote of a string left unterminated at EOF
+    private Location unterminatedStringLoc; // location of that opening quote
+    private int errorsBeforeUnterminatedString; // number of errors found before that string's
 
     public Scanner(String source) {
+        this(source, new SymbolTable());
+    }
+
+    /// Create a scanner interning identifiers into an existing symbol table, so that names are shared across sources
+    public Scanner(String source, SymbolTable symbols) {
+        this(source, symbols, 0, source.length(), 0, 0);
+    }
+
+    /// Create a scanner over the range `from` to `to` of the source, starting at the given line and line offset
+    Scanner(String source, SymbolTable symbols, int from, int to, int line, int lineOffset) {
+        this.source = source;
+        this.symbols = symbols;
+        this.end = to;
+        this.current = from;
+        this.line = line;
+        this.lineStart = from - lineOffset;
+    }
+
+    /// The calling thread's reusable scanner, [reset][#reset] to scan the given source. Its symbol table and metrics
+    /// are shared by all sources scanned with it on the thread, and the results of its packed scans are only valid
+    /// until the thread calls this method again.
+    ///
+    /// Settings of the previous caller don't carry over: scans have no maximum number of errors unless
+    /// [#withMaxErrors] is called again. The symbol table is replaced by an empty one once it holds more than
+    /// [#MAX_LOCAL_SYMBOLS] names, so that a long-lived thread scanning many unrelated sources doesn't keep all their
+    /// names.
+    public static Scanner local(String source) {
+        Scanner scanner = LOCAL.get();
+        if (scanner.symbols.size() > MAX_LOCAL_SYMBOLS) {
+            scanner.symbols = new SymbolTable();
+            // packed storage interns into the old table, so is not reused either
+            scanner.packed = null;
+            scanner.spare = null;
+        }
+        scanner.errors.setMaxErrors(ScanErrors.UNLIMITED);
+        return scanner.reset(source);
+    }
+
+    /// Discard the state of the previous scan and start over on a new source, keeping the symbol table and metrics.
+    /// Token and error storage is reused, including the [PackedTokens] of the last packed scan: that is overwritten
+    /// by the next packed scan of the same kind, so must no longer be used once this scanner has been reset.
+    /// [ScanResult]s are copies, and stay valid.
+    /// @return this scanner
+    public Scanner reset(String source) {
+        return reset(source, 0, 0, 0);
+    }
+
+    /// [Reset][#reset(String)] to scan the source from index `from` to its end, starting at the given line and line
+    /// offset
+    Scanner reset(String source, int from, int line, int lineOffset) {
         this.source = source;
+        end = source.length();
+        tokens.clear();
+        errors.clear();
+        if (packed != null) spare = packed;
+        packed = null;
+        lineIndex = null;
+        start = from;
+        current = from;
+        this.line = line;
+        lineStart = from - lineOffset;
+        unterminatedString = -1;
+        unterminatedStringLoc = null;
+        errorsBeforeUnterminatedString = 0;
+        return this;
+    }
+
+    /// Abort scans once they have found `maxErrors` errors, adding a summary error in place of the next one and
+    /// ending the tokens there. Runs of consecutive unexpected characters only count as one error, however long
+    /// @return this scanner
+    public Scanner withMaxErrors(int maxErrors) {
+        errors.setMaxErrors(maxErrors);
+        return this;
+    }
+
+    /// Table the identifiers of this scanner's source are interned into
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    /// Report every scan of this scanner to the given metrics. Scans are also reported to Flight Recorder, as
+    /// [ScanEvent]s, whether or not metrics are attached
+    /// @return this scanner
+    public Scanner withMetrics(ScanMetrics metrics) {
+        this.metrics = metrics;
+        return this;
     }
 
     public record ScanResult(List<Token> tokens, List<ScanError> errors) {}
@@ -50,139 +156,281 @@ public class Scanner {
     }
 
     public ScanResult scanTokens() {
+        var event = new ScanEvent();
+        event.begin();
+        long startTime = metrics != null ? System.nanoTime() : 0;
+        int from = current;
+
         while (!isEof()) {
             // advance the start pointer to the current location
             start = current;
             scanToken();
         }
 
-        tokens.add(new Token(EOF, new Location(line, lineOffset)));
-        return new ScanResult(List.copyOf(tokens), List.copyOf(errors));
+        tokens.add(new Token(EOF, new Location(line, current - lineStart)));
+        recordScan(event, startTime, from);
+        return new ScanResult(List.copyOf(tokens), errors.list());
     }
 
-    /// Scans source for the next token
-    private void scanToken() {
-        char c = advance();
-        switch (c) {
-            case '(' -> addToken(LEFT_PAREN);
-            case ')' -> addToken(RIGHT_PAREN);
-            case '{' -> addToken(LEFT_BRACE);
-            case '}' -> addToken(RIGHT_BRACE);
-            case ',' -> addToken(COMMA);
-            case '.' -> addToken(DOT);
-            case '-' -> addToken(MINUS);
-            case '+' -> addToken(PLUS);
-            case ';' -> addToken(SEMICOLON);
-            case '*' -> addToken(STAR);
-            case '!' -> addToken(readAheadMatch('=') ? BANG_EQUAL : BANG);
-            case '=' -> addToken(readAheadMatch('=') ? EQUAL_EQUAL : EQUAL);
-            case '<' -> addToken(readAheadMatch('=') ? LESS_EQUAL : LESS);
-            case '>' -> addToken(readAheadMatch('=') ? GREATER_EQUAL : GREATER);
-            case '/' -> commentOrSlash();
-            case '\n' -> newLine();
-            case '"' -> stringLiteral();
-            case ' ', '\t', '\r' -> { /* Ignore whitespace */ }
-            default -> {
-                if (isDigit(c)) {
-                    number();
-                } else if (isAlpha(c)) {
-                    identifier();
-                } else {
-                    errors.add(new ScanError(new Location(line, lineOffset), "Unexpected character: " + c));
-                }
+    /// Scan the source into a [PackedTokens] buffer, which stores tokens as primitive arrays and only materialises
+    /// token objects on demand
+    public PackedTokens scanPacked() {
+        return scanPacked(false);
+    }
+
+    /// Scan the source into a [PackedTokens] buffer which stores only the source offset of each token, along with a
+    /// [LineIndex] of the source that locations are resolved with when asked for. Newlines are only recorded in the
+    /// index, so the scan keeps no line or column of its own.
+    ///
+    /// Resolved locations are those of the first char of each token, and of the offending char (or opening quote,
+    /// for unterminated strings) of each error. Unlike those of the other scans, they are therefore also correct for
+    /// string literals spanning several lines.
+    public PackedTokens scanOffsets() {
+        return scanPacked(true);
+    }
+
+    /// @param lazy whether to store only the offset of each token, and resolve locations with a line index
+    private PackedTokens scanPacked(boolean lazy) {
+        var event = new ScanEvent();
+        event.begin();
+        long startTime = metrics != null ? System.nanoTime() : 0;
+        int from = current;
+
+        if (spare != null && (spare.lineIndex() != null) == lazy) {
+            packed = spare;
+            packed.reset(source);
+        } else {
+            // most sources average well over 8 characters per token
+            packed = new PackedTokens(source, symbols, (end - current) >> 3, lazy ? new LineIndex() : null);
+        }
+        spare = null;
+        lineIndex = packed.lineIndex();
+        while (!isEof()) {
+            start = current;
+            scanToken();
+        }
+
+        finishPacked();
+        recordScan(event, startTime, from);
+        return packed;
+    }
+
+    /// Report a completed scan of the characters from `from` to the Flight Recorder event and the metrics, if either
+    /// is enabled. Tokens are only counted by kind once the scan is over, so the scanning loop is never slowed down
+    private void recordScan(ScanEvent event, long startTime, int from) {
+        event.end();
+        int tokenCount = packed != null ? packed.size() : tokens.size();
+        if (event.shouldCommit()) {
+            event.chars = current - from;
+            event.tokens = tokenCount;
+            event.errors = errors.size();
+            event.packed = packed != null;
+            event.commit();
+        }
+
+        if (metrics != null) {
+            long nanos = System.nanoTime() - startTime;
+            int[] tokenCounts = new int[ScanMetrics.KINDS];
+            for (int i = 0; i < tokenCount; i++) {
+                tokenCounts[packed != null ? packed.kind(i) : ScanMetrics.kind(tokens.get(i).type())]++;
             }
+            metrics.record(current - from, nanos, tokenCounts, errors.size());
         }
+    }
 
-        curentTokenStartLineOffset = lineOffset;
+    /// Start scanning into packed storage, for callers driving the scan themselves with [#scanLine()]
+    void startPacked() {
+        packed = new PackedTokens(source, symbols, 16);
     }
 
-    /// Handle new line, incrementing line number and resetting line offset
-    private void newLine() {
-        lineOffset = 0;
-        line++;
+    /// Scan up to and including the next newline which is not part of a token (i.e. not inside a string literal)
+    /// @return index of the start of the next line, or -1 if the end of the range was reached first
+    int scanLine() {
+        while (!isEof()) {
+            start = current;
+            scanToken();
+            if (current == start + 1 && source.charAt(start) == '\n') return current;
+        }
+        return -1;
     }
 
-    /// Handle comment or slash alternative
-    private void commentOrSlash() {
-        if (readAheadMatch('/'))
-            while (peek() != '\n' && !isEof()) advance();
-        else
-            addToken(SLASH);
+    /// Complete a packed scan. The `EOF` token is only added if the whole range has been scanned
+    PackedTokens finishPacked() {
+        if (isEof()) packed.add(EOF.ordinal(), current, 0, line, current - lineStart);
+        packed.setErrors(errors.list());
+        return packed;
+    }
+
+    /// Scans source for the next token, dispatching on the class of its first character
+    private void scanToken() {
+        char c = source.charAt(current++);
+        switch (charClass(c)) {
+            case SINGLE -> addToken(SINGLE_CHAR_TOKENS[c]);
+            case EQUALS_SUFFIX -> {
+                // one or two character operator, depending on whether it is followed by '='
+                if (current < end && source.charAt(current) == '=') {
+                    current++;
+                    addToken(EQUALS_SUFFIXED_TOKENS[c]);
+                } else {
+                    addToken(SINGLE_CHAR_TOKENS[c]);
+                }
+            }
+            case SLASH_OR_COMMENT -> commentOrSlash();
+            case NEWLINE -> newLine();
+            case QUOTE -> stringLiteral();
+            case WHITESPACE -> whitespace();
+            case DIGIT -> number();
+            case ALPHA -> identifier();
+            default -> unexpectedCharacter(c);
+        }
     }
 
-    /// Consume the next token conditionally on whether it matches expected, used for double-character lexemes
-    /// @param expected Expected character to see next
-    /// @return true if we matched
-    private boolean readAheadMatch(char expected) {
-        if (isEof()) return false;
-        if (source.charAt(current) != expected) return false;
+    /// Report the unexpected character just consumed, as part of a run with any directly before it
+    private void unexpectedCharacter(char c) {
+        if (!errors.extendRun(current - 1, current, c)) errors.unexpected(errorLocation(current - 1), current, c);
+        if (errors.aborted()) {
+            // skip the rest of the source, leaving the position (and so the EOF token) at the error
+            lineStart += end - current;
+            current = end;
+        }
+    }
 
-        advance();
-        return true;
+    /// Handle new line, incrementing line number and resetting line offset, or only recording the line's start when
+    /// scanning with a line index
+    private void newLine() {
+        if (lineIndex != null) {
+            lineIndex.add(current);
+        } else {
+            line++;
+            lineStart = current;
+        }
     }
 
-    /// Return the current character without consuming
-    private char peek() {
-        return isEof() ? '\0' : source.charAt(current);
+    /// Location to report an error at. Errors are located at the current position, or at the char at `offset` when
+    /// scanning with a line index
+    private Location errorLocation(int offset) {
+        return lineIndex != null ? lineIndex.locate(offset) : new Location(line, current - lineStart);
     }
 
-    /// Returns the next character without consuming. This language only needs two character lookahead
-    private char peekNext() {
-        if (current+1 >= source.length()) return '\0';
-        return source.charAt(current + 1);
+    /// Consume the rest of a run of whitespace
+    private void whitespace() {
+        while (current < end && charClass(source.charAt(current)) == WHITESPACE) current++;
     }
 
-    /// Return the character under the current pointer and consume
-    private char advance() {
-        lineOffset++;
-        return source.charAt(current++);
+    /// Handle comment or slash alternative. Comments are skipped up to the next newline in one search
+    private void commentOrSlash() {
+        if (current < end && source.charAt(current) == '/') {
+            int newline = source.indexOf('\n', current, end);
+            current = newline < 0 ? end : newline;
+        } else {
+            addToken(SLASH);
+        }
     }
 
-    /// Consume a string (between ""), handling EOF case for unterminated string
+    /// Consume a string (between ""), handling EOF case for unterminated string. The closing quote and the newlines
+    /// in between are found with searches rather than character by character, neither of which looks past the end of
+    /// the literal (or of the range being scanned)
     private void stringLiteral() {
-        while (peek() != '"' && !isEof()) {
-            if (peek() == '\n') newLine();
-            advance();
+        int startLine = line;
+        int startColumn = start - lineStart;
+        int quote = source.indexOf('"', current, end);
+        int stop = quote < 0 ? end : quote;
+
+        for (int i = source.indexOf('\n', current, stop); i >= 0; i = source.indexOf('\n', i + 1, stop)) {
+            if (lineIndex != null) {
+                lineIndex.add(i + 1);
+            } else {
+                // a newline inside a literal counts towards the line offset of the next line, like any other character
+                line++;
+                lineStart = i;
+            }
         }
+        current = stop;
 
         if (isEof()) {
-            errors.add(new ScanError(new Location(line, lineOffset), "Unterminated string literal"));
+            unterminatedString = start;
+            unterminatedStringLoc = lineIndex != null ? lineIndex.locate(start) : new Location(startLine, startColumn);
+            errorsBeforeUnterminatedString = errors.size();
+            errors.add(errorLocation(start), "Unterminated string literal");
             return;
         }
 
-        advance();
-
-        // extract the string literal contents without the quote marks
-        addToken(new StrLit(source.substring(start+1, current-1)));
+        current++;
+        // located on the line the literal ends on, at the column it starts at
+        addLiteral(PackedTokens.STRING, startColumn);
     }
 
     /// Consume a numerical literal
     private void number() {
-        while (isDigit(peek())) advance();
+        while (current < end && charClass(source.charAt(current)) == DIGIT) current++;
 
         // check to see whether we have a decimal point number
-        if (peek() == '.' && isDigit(peekNext())) {
-            do advance(); while (isDigit(peek()));
+        if (current + 1 < end && source.charAt(current) == '.' && charClass(source.charAt(current + 1)) == DIGIT) {
+            current += 2;
+            while (current < end && charClass(source.charAt(current)) == DIGIT) current++;
         }
 
-        addToken(new NumLit(Double.parseDouble(source.substring(start, current))));
+        addLiteral(PackedTokens.NUMBER);
     }
 
     private void identifier() {
-        while (isAlphaNumeric(peek())) advance();
-        String name = source.substring(start, current);
-        addToken(RESERVED_WORDS.getOrDefault(name, new Ident(name)));
+        while (current < end && charClass(source.charAt(current)) >= DIGIT) current++;
+
+        Symbol keyword = keyword(source, start, current);
+        if (keyword != null)
+            addToken(keyword);
+        else
+            addLiteral(PackedTokens.IDENT);
+    }
+
+    private void addToken(Symbol t) {
+        if (packed != null)
+            packed.add(t.ordinal(), start, current - start, line, start - lineStart);
+        else
+            tokens.add(new Token(t, new Location(line, start - lineStart)));
+    }
+
+    /// Add an identifier or literal token of the given [PackedTokens] kind, only materialising its value (which is
+    /// extracted from the current lexeme) when not scanning into packed storage
+    private void addLiteral(int kind) {
+        addLiteral(kind, start - lineStart);
     }
 
-    private void addToken(TokenType t) {
-        tokens.add(new Token(t, new Location(line, curentTokenStartLineOffset)));
+    private void addLiteral(int kind, int column) {
+        if (packed != null)
+            packed.add(kind, start, current - start, line, column);
+        else
+            tokens.add(new Token(PackedTokens.typeOf(kind, source, symbols, start, current), new Location(line, column)));
     }
 
     /// Returns true if we have hit the end of the source
     private boolean isEof() {
-        return current >= source.length();
+        return current >= end;
+    }
+
+    /// Index of the opening quote of the string literal left unterminated at the end of the scanned range, or -1
+    int unterminatedString() {
+        return unterminatedString;
+    }
+
+    /// Location of the opening quote of the string literal left unterminated at the end of the scanned range
+    Location unterminatedStringLoc() {
+        return unterminatedStringLoc;
+    }
+
+    /// Returns true if the last scan was aborted, having found more than the maximum number of errors
+    boolean aborted() {
+        return errors.aborted();
+    }
+
+    /// Number of errors found before the string literal left unterminated at the end of the scanned range. The errors
+    /// after them are the string's own, or the summary error it took the scan over the maximum number of errors with
+    int errorsBeforeUnterminatedString() {
+        return errorsBeforeUnterminatedString;
     }
 
+    /// Reserved words by name, for scanners which do not work on a `String` source. [Scanner] itself recognises
+    /// keywords in place with [ScannerUtils#keyword]
     static Map<String, TokenType> RESERVED_WORDS = Map.ofEntries(
             Map.entry("and", AND),
             Map.entry("class", CLASS),
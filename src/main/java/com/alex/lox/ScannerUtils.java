@@ -1,6 +1,61 @@
 package com.alex.lox;
 
+import static com.alex.lox.TokenType.Symbol;
+import static com.alex.lox.TokenType.Symbol.*;
+
 public class ScannerUtils {
+    /// Largest significand for which every smaller integer is exactly representable as a double
+    static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+
+    /// Powers of ten which are exactly representable as a double
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Character classes shared by the scanners, ordered so that the classes of characters which may continue an
+    // identifier come last
+    static final byte OTHER = 0, WHITESPACE = 1, NEWLINE = 2, QUOTE = 3, SLASH_OR_COMMENT = 4, SINGLE = 5,
+            EQUALS_SUFFIX = 6, DIGIT = 7, ALPHA = 8;
+
+    /// Class of each ASCII character, all other characters are [#OTHER]
+    static final byte[] CHAR_CLASSES = new byte[128];
+    /// Token for each character of class [#SINGLE] or [#EQUALS_SUFFIX] on its own
+    static final Symbol[] SINGLE_CHAR_TOKENS = new Symbol[128];
+    /// Token for each character of class [#EQUALS_SUFFIX] followed by '='
+    static final Symbol[] EQUALS_SUFFIXED_TOKENS = new Symbol[128];
+
+    static {
+        for (char c : " \t\r".toCharArray()) CHAR_CLASSES[c] = WHITESPACE;
+        CHAR_CLASSES['\n'] = NEWLINE;
+        CHAR_CLASSES['"'] = QUOTE;
+        CHAR_CLASSES['/'] = SLASH_OR_COMMENT;
+        for (char c = '0'; c <= '9'; c++) CHAR_CLASSES[c] = DIGIT;
+        for (char c = 'a'; c <= 'z'; c++) CHAR_CLASSES[c] = ALPHA;
+        for (char c = 'A'; c <= 'Z'; c++) CHAR_CLASSES[c] = ALPHA;
+        CHAR_CLASSES['_'] = ALPHA;
+
+        for (Symbol s : Symbol.values()) {
+            String lexeme = s.lexeme();
+            if (lexeme.length() == 1 && s != SLASH) {
+                CHAR_CLASSES[lexeme.charAt(0)] = SINGLE;
+                SINGLE_CHAR_TOKENS[lexeme.charAt(0)] = s;
+            }
+        }
+        for (Symbol s : Symbol.values()) {
+            String lexeme = s.lexeme();
+            if (lexeme.length() == 2 && lexeme.charAt(1) == '=') {
+                CHAR_CLASSES[lexeme.charAt(0)] = EQUALS_SUFFIX;
+                EQUALS_SUFFIXED_TOKENS[lexeme.charAt(0)] = s;
+            }
+        }
+    }
+
+    /// Class of a character, one of the constants above
+    static byte charClass(char c) {
+        return c < 128 ? CHAR_CLASSES[c] : OTHER;
+    }
+
     public static boolean isDigit(char c) {
         return c >= '0' && c <= '9';
     }
@@ -14,4 +69,71 @@ public class ScannerUtils {
     public static boolean isAlphaNumeric(char c) {
         return isAlpha(c) || isDigit(c);
     }
+
+    /// Parse the number literal spanning `start` to `end` in `source`, giving exactly the same result as
+    /// [Double#parseDouble] without extracting the lexeme unless the literal is too long to be converted exactly
+    public static double parseNumber(CharSequence source, int start, int end) {
+        long significand = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+            significand = significand * 10 + (c - '0');
+            if (fraction) fractionDigits++;
+            if (significand > MAX_EXACT_SIGNIFICAND) return Double.parseDouble(source.subSequence(start, end).toString());
+        }
+
+        double value = exactDecimal(significand, fractionDigits);
+        return Double.isNaN(value) ? Double.parseDouble(source.subSequence(start, end).toString()) : value;
+    }
+
+    /// Value of `significand / 10^fractionDigits` if it can be computed exactly, that is when both operands are
+    /// exactly representable so a single correctly rounded division gives the correctly rounded result
+    /// @return the value, or NaN if the caller needs to fall back to a full decimal conversion
+    static double exactDecimal(long significand, int fractionDigits) {
+        if (significand > MAX_EXACT_SIGNIFICAND || fractionDigits >= EXACT_POWERS_OF_TEN.length) return Double.NaN;
+        return (double) significand / EXACT_POWERS_OF_TEN[fractionDigits];
+    }
+
+    /// Recognise a reserved word spanning `start` to `end` in `source` without extracting it, by switching on its
+    /// first character (and second, where two keywords of the same length share a first character)
+    /// @return the keyword, or null if the range is an ordinary identifier
+    public static Symbol keyword(CharSequence source, int start, int end) {
+        return switch (source.charAt(start)) {
+            case 'a' -> matches(source, start, end, "and", AND);
+            case 'c' -> matches(source, start, end, "class", CLASS);
+            case 'e' -> matches(source, start, end, "else", ELSE);
+            case 'f' -> end - start == 5 ? matches(source, start, end, "false", FALSE)
+                    : end - start > 1 && source.charAt(start + 1) == 'u' ? matches(source, start, end, "fun", FUN)
+                    : matches(source, start, end, "for", FOR);
+            case 'i' -> matches(source, start, end, "if", IF);
+            case 'n' -> matches(source, start, end, "nil", NIL);
+            case 'o' -> matches(source, start, end, "or", OR);
+            case 'p' -> matches(source, start, end, "print", PRINT);
+            case 'r' -> matches(source, start, end, "return", RETURN);
+            case 's' -> matches(source, start, end, "super", SUPER);
+            case 't' -> end - start > 1 && source.charAt(start + 1) == 'h' ? matches(source, start, end, "this", THIS)
+                    : matches(source, start, end, "true", TRUE);
+            case 'v' -> matches(source, start, end, "var", VAR);
+            case 'w' -> matches(source, start, end, "while", WHILE);
+            default -> null;
+        };
+    }
+
+    private static Symbol matches(CharSequence source, int start, int end, String word, Symbol keyword) {
+        return end - start == word.length() && regionMatches(source, start, word) ? keyword : null;
+    }
+
+    /// Returns true if `word` occurs in `source` at index `start`
+    static boolean regionMatches(CharSequence source, int start, String word) {
+        if (source instanceof String s) return s.startsWith(word, start);
+        for (int i = 0; i < word.length(); i++) {
+            if (source.charAt(start + i) != word.charAt(i)) return false;
+        }
+        return true;
+    }
 }
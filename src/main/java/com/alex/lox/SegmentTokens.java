@@ -0,0 +1,142 @@
+package com.alex.lox;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static com.alex.lox.TokenType.*;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/// Off-heap counterpart of [PackedTokens], for sources held in a [MemorySegment] and too large for the heap: the
+/// tokens of a [Utf8Scanner#scanPacked] scan stored as fixed-size records in memory allocated from an [Arena], with
+/// `long` source offsets and token indices.
+///
+/// Storage grows in blocks of [#BLOCK_TOKENS] records, so it is never copied and the Java heap only holds one
+/// reference per block. It is released when the arena is closed, after which none of the tokens can be read. Like
+/// direct buffers, it counts towards `-XX:MaxDirectMemorySize` (by default the maximum heap size), which may need
+/// raising for large sources: each token takes 24 bytes.
+/// Lexemes are zero-copy slices of the source, and token values are only decoded when asked for, so the source must
+/// stay mapped for as long as the tokens are read.
+///
+/// Token kinds are those of [PackedTokens]. Lines and columns are those [Utf8Scanner] reports.
+public final class SegmentTokens {
+    /// Number of token records in each block of storage
+    static final int BLOCK_TOKENS = 1 << 16;
+
+    // Layout of a token record, in bytes
+    private static final long START = 0, LENGTH = 8, KIND = 12, LINE = 16, COLUMN = 20, RECORD_SIZE = 24;
+
+    private static final Symbol[] SYMBOLS = Symbol.values();
+
+    private final MemorySegment source;
+    private final Arena arena;
+    private final List<MemorySegment> blocks = new ArrayList<>();
+    private MemorySegment block; // block new tokens are added to
+    private long size = 0;
+    private List<Scanner.ScanError> errors = List.of();
+
+    SegmentTokens(MemorySegment source, Arena arena) {
+        this.source = source;
+        this.arena = arena;
+    }
+
+    /// Add a token whose lexeme spans `start` to `end` in the source
+    /// @throws ArithmeticException if the lexeme is 2GB or longer
+    void add(int kind, long start, long end, int line, int column) {
+        int slot = (int) (size % BLOCK_TOKENS);
+        if (slot == 0) {
+            block = arena.allocate(BLOCK_TOKENS * RECORD_SIZE, Long.BYTES);
+            blocks.add(block);
+        }
+        long base = slot * RECORD_SIZE;
+        block.set(JAVA_LONG, base + START, start);
+        block.set(JAVA_INT, base + LENGTH, Math.toIntExact(end - start));
+        block.set(JAVA_INT, base + KIND, kind);
+        block.set(JAVA_INT, base + LINE, line);
+        block.set(JAVA_INT, base + COLUMN, column);
+        size++;
+    }
+
+    void setErrors(List<Scanner.ScanError> errors) {
+        this.errors = List.copyOf(errors);
+    }
+
+    /// Number of tokens, including the trailing `EOF` token
+    public long size() {
+        return size;
+    }
+
+    public int kind(long i) {
+        return getInt(i, KIND);
+    }
+
+    /// Byte offset into the source of the first byte of the token's lexeme
+    public long start(long i) {
+        return getLong(i, START);
+    }
+
+    /// Length in bytes of the token's lexeme, including the quotes of string literals
+    public int length(long i) {
+        return getInt(i, LENGTH);
+    }
+
+    public int line(long i) {
+        return getInt(i, LINE);
+    }
+
+    public int column(long i) {
+        return getInt(i, COLUMN);
+    }
+
+    public Location location(long i) {
+        return new Location(line(i), column(i));
+    }
+
+    /// Returns true if token `i` is the given symbol or keyword
+    public boolean is(long i, Symbol symbol) {
+        return kind(i) == symbol.ordinal();
+    }
+
+    /// View of the UTF-8 bytes of the token's lexeme in the source
+    public MemorySegment lexeme(long i) {
+        return source.asSlice(start(i), length(i));
+    }
+
+    /// Token type of token `i`, decoding its value from the source
+    public TokenType type(long i) {
+        int kind = kind(i);
+        if (kind < SYMBOLS.length) return SYMBOLS[kind];
+
+        long start = start(i), end = start + length(i);
+        if (kind == PackedTokens.IDENT) return new Ident(decode(start, end));
+        if (kind == PackedTokens.STRING) return new StrLit(decode(start + 1, end - 1));
+        return new NumLit(Double.parseDouble(decode(start, end)));
+    }
+
+    public Token token(long i) {
+        return new Token(type(i), location(i));
+    }
+
+    public List<Scanner.ScanError> errors() {
+        return errors;
+    }
+
+    private long getLong(long i, long field) {
+        Objects.checkIndex(i, size);
+        return blocks.get((int) (i / BLOCK_TOKENS)).get(JAVA_LONG, (i % BLOCK_TOKENS) * RECORD_SIZE + field);
+    }
+
+    private int getInt(long i, long field) {
+        Objects.checkIndex(i, size);
+        return blocks.get((int) (i / BLOCK_TOKENS)).get(JAVA_INT, (i % BLOCK_TOKENS) * RECORD_SIZE + field);
+    }
+
+    private String decode(long from, long to) {
+        return new String(source.asSlice(from, to - from).toArray(JAVA_BYTE), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+package com.alex.lox;
+
+import java.util.concurrent.locks.LockSupport;
+
+/// Bounded ring buffer for handing items from exactly one producer thread to exactly one consumer thread.
+///
+/// With a single thread on each side no locks or compare-and-set are needed: each side owns its own position and
+/// only publishes it. A full buffer blocks the producer and an empty one the consumer, first spinning briefly (the
+/// other side is usually only a moment away) and then parking until woken by the other side.
+final class SpscRing<T> {
+    private static final int SPINS = 128; // polls before parking
+
+    private final Object[] slots;
+    private final int mask;
+
+    private volatile long head = 0; // position of the next item to take, only written by the consumer
+    private volatile long tail = 0; // position of the next item to put, only written by the producer
+    private volatile Thread waitingProducer; // producer parked on a full buffer, or null
+    private volatile Thread waitingConsumer; // consumer parked on an empty buffer, or null
+
+    /// @param capacity maximum number of items held, rounded up to a power of two
+    SpscRing(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        int size = 1;
+        while (size < capacity) size <<= 1;
+        slots = new Object[size];
+        mask = slots.length - 1;
+    }
+
+    /// Add an item, waiting for space if the buffer is full. May only be called from the producer thread
+    void put(T item) throws InterruptedException {
+        long t = tail;
+        for (int spins = 0; t - head == slots.length; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                // publish that we are waiting before the final check, so the consumer either sees us or we see it
+                waitingProducer = Thread.currentThread();
+                if (t - head == slots.length) LockSupport.park(this);
+                waitingProducer = null;
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+        }
+
+        slots[(int) t & mask] = item;
+        tail = t + 1;
+        Thread consumer = waitingConsumer;
+        if (consumer != null) LockSupport.unpark(consumer);
+    }
+
+    /// Remove the oldest item, waiting for one if the buffer is empty. May only be called from the consumer thread
+    @SuppressWarnings("unchecked")
+    T take() throws InterruptedException {
+        long h = head;
+        for (int spins = 0; h == tail; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                waitingConsumer = Thread.currentThread();
+                if (h == tail) LockSupport.park(this);
+                waitingConsumer = null;
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+        }
+
+        int slot = (int) h & mask;
+        T item = (T) slots[slot];
+        slots[slot] = null;
+        head = h + 1;
+        Thread producer = waitingProducer;
+        if (producer != null) LockSupport.unpark(producer);
+        return item;
+    }
+}
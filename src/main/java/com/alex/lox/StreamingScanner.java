@@ -0,0 +1,265 @@
+package com.alex.lox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static com.alex.lox.ScannerUtils.*;
+import static com.alex.lox.TokenType.Symbol.*;
+
+/// Pull-based scanner which reads its source incrementally from a [Reader] through a bounded sliding buffer.
+///
+/// Unlike [Scanner], which needs the whole source as a `String` and returns a fully materialised token list, tokens
+/// are produced one at a time by [#nextToken()]. Only the lexeme currently being scanned is kept in the buffer, so
+/// memory stays flat regardless of the size of the input (the buffer only grows if a single lexeme, e.g. a huge
+/// string literal, does not fit in it). The produced tokens and errors are identical to those of [Scanner].
+public class StreamingScanner implements TokenStream, Iterator<Token>, Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final SymbolTable symbols = new SymbolTable();
+    private final ScanErrors errors = new ScanErrors();
+
+    private char[] buf; // sliding window over the source, valid between 0 and limit
+    private CharBuffer view; // buf as a CharSequence, for the helpers shared with Scanner
+    private int limit = 0; // number of valid characters in buf
+    private boolean readerEof = false; // true once the reader has been drained
+    private long shifted = 0; // number of characters slid out of the front of buf, i.e. source offset of buf[0]
+
+    private int start = 0; // index into buf to the first char in the current lexeme being scanned
+    private int current = 0; // index into buf to the character currently being considered
+    private int line = 0; // line number we are currently on
+    private int curentTokenStartLineOffset = 0; // line offset of the start of the current token, used for error reporting
+    private int lineOffset = 0; // offset into the current line, used for error reporting
+
+    private Token scanned; // token produced by the last call to scanToken, if any
+    private boolean exhausted = false; // true once the EOF token has been handed out
+    private ScanMetrics metrics; // metrics the scan is reported to, or null
+    private ScanRecorder recording; // the scan, once the first token has been asked for
+
+    public StreamingScanner(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    public StreamingScanner(Reader reader, int bufferSize) {
+        if (bufferSize < 2) throw new IllegalArgumentException("Buffer size must be at least 2");
+        this.reader = reader;
+        this.buf = new char[bufferSize];
+        this.view = CharBuffer.wrap(buf);
+    }
+
+    /// Create a streaming scanner decoding the bytes of a channel with the given charset
+    public static StreamingScanner of(ReadableByteChannel channel, Charset charset) {
+        return new StreamingScanner(Channels.newReader(channel, charset.newDecoder(), -1));
+    }
+
+    @Override
+    public Token nextToken() {
+        if (recording == null) recording = new ScanRecorder(metrics);
+        scanned = null;
+        while (scanned == null) {
+            // advance the start pointer to the current location
+            start = current;
+            if (errors.aborted() || isEof()) {
+                exhausted = true;
+                recording.count(EOF);
+                recording.end(shifted + current, errors.size(), false);
+                return new Token(EOF, new Location(line, lineOffset));
+            }
+            scanToken();
+        }
+        recording.count(scanned.type());
+        return scanned;
+    }
+
+    @Override
+    public List<Scanner.ScanError> errors() {
+        return errors.list();
+    }
+
+    /// Abort the scan once it has found `maxErrors` errors, as [Scanner#withMaxErrors] does
+    /// @return this scanner
+    public StreamingScanner withMaxErrors(int maxErrors) {
+        errors.setMaxErrors(maxErrors);
+        return this;
+    }
+
+    /// Report the scan to the given metrics, as [Scanner#withMetrics] does, once its `EOF` token has been handed out
+    /// @return this scanner
+    public StreamingScanner withMetrics(ScanMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !exhausted;
+    }
+
+    @Override
+    public Token next() {
+        if (exhausted) throw new NoSuchElementException();
+        return nextToken();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /// Scans the buffer for the next token, dispatching on the class of its first character as [Scanner] does
+    private void scanToken() {
+        char c = advance();
+        switch (charClass(c)) {
+            case SINGLE -> addToken(SINGLE_CHAR_TOKENS[c]);
+            case EQUALS_SUFFIX -> addToken(readAheadMatch('=') ? EQUALS_SUFFIXED_TOKENS[c] : SINGLE_CHAR_TOKENS[c]);
+            case SLASH_OR_COMMENT -> commentOrSlash();
+            case NEWLINE -> newLine();
+            case QUOTE -> stringLiteral();
+            case WHITESPACE -> { /* Ignore whitespace */ }
+            case DIGIT -> number();
+            case ALPHA -> identifier();
+            default -> {
+                // report the character as part of a run with any directly before it
+                long offset = shifted + current - 1;
+                if (!errors.extendRun(offset, offset + 1, c)) errors.unexpected(new Location(line, lineOffset), offset + 1, c);
+            }
+        }
+
+        curentTokenStartLineOffset = lineOffset;
+    }
+
+    /// Handle new line, incrementing line number and resetting line offset
+    private void newLine() {
+        lineOffset = 0;
+        line++;
+    }
+
+    /// Handle comment or slash alternative
+    private void commentOrSlash() {
+        if (readAheadMatch('/')) {
+            // comment contents are never needed, so let the buffer slide past them
+            while (peek() != '\n' && !isEof()) {
+                start = current;
+                advance();
+            }
+        } else {
+            addToken(SLASH);
+        }
+    }
+
+    /// Consume the next token conditionally on whether it matches expected, used for double-character lexemes
+    private boolean readAheadMatch(char expected) {
+        if (isEof()) return false;
+        if (buf[current] != expected) return false;
+
+        advance();
+        return true;
+    }
+
+    /// Return the current character without consuming
+    private char peek() {
+        return ensure(1) ? buf[current] : '\0';
+    }
+
+    /// Returns the next character without consuming. This language only needs two character lookahead
+    private char peekNext() {
+        return ensure(2) ? buf[current + 1] : '\0';
+    }
+
+    /// Return the character under the current pointer and consume
+    private char advance() {
+        lineOffset++;
+        return buf[current++];
+    }
+
+    /// Consume a string (between ""), handling EOF case for unterminated string
+    private void stringLiteral() {
+        while (peek() != '"' && !isEof()) {
+            if (peek() == '\n') newLine();
+            advance();
+        }
+
+        if (isEof()) {
+            errors.add(new Location(line, lineOffset), "Unterminated string literal");
+            return;
+        }
+
+        advance();
+
+        // extract the string literal contents without the quote marks
+        addToken(new StrLit(new String(buf, start + 1, current - start - 2)));
+    }
+
+    /// Consume a numerical literal, parsing it in place in the buffer
+    private void number() {
+        while (charClass(peek()) == DIGIT) advance();
+
+        // check to see whether we have a decimal point number
+        if (peek() == '.' && charClass(peekNext()) == DIGIT) {
+            do advance(); while (charClass(peek()) == DIGIT);
+        }
+
+        addToken(new NumLit(parseNumber(view, start, current)));
+    }
+
+    /// Consume an identifier or keyword, recognising keywords and interning identifiers in place in the buffer
+    private void identifier() {
+        while (charClass(peek()) >= DIGIT) advance();
+        Symbol keyword = keyword(view, start, current);
+        addToken(keyword != null ? keyword : symbols.intern(view, start, current));
+    }
+
+    private void addToken(TokenType t) {
+        scanned = new Token(t, new Location(line, curentTokenStartLineOffset));
+    }
+
+    /// Returns true if we have hit the end of the source
+    private boolean isEof() {
+        return !ensure(1);
+    }
+
+    /// Make sure at least `n` characters starting at current are buffered, refilling from the reader if needed
+    /// @return false if the source ends before `n` characters are available
+    private boolean ensure(int n) {
+        while (limit - current < n) {
+            if (readerEof) return false;
+            fill();
+        }
+        return true;
+    }
+
+    /// Slide the current lexeme to the front of the buffer and read more of the source after it. The buffer is only
+    /// grown when the current lexeme alone fills it
+    private void fill() {
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, limit - start);
+            shifted += start;
+            limit -= start;
+            current -= start;
+            start = 0;
+        }
+        if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+            view = CharBuffer.wrap(buf);
+        }
+
+        try {
+            int n = reader.read(buf, limit, buf.length - limit);
+            if (n < 0) readerEof = true;
+            else limit += n;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
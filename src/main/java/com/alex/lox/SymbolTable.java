@@ -0,0 +1,114 @@
+package com.alex.lox;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.alex.lox.TokenType.Ident;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+/// Interning table for identifiers. Every distinct name is stored once, as a single [Ident] instance with a stable
+/// integer id (assigned in order of first appearance, starting at 0), so repeated occurrences of a name allocate
+/// nothing and later stages can compare names by identity or by id.
+///
+/// Names are looked up straight from a range of the source, only being extracted the first time they are seen.
+public final class SymbolTable {
+    private Ident[] idents = new Ident[64]; // interned identifiers, indexed by id
+    private int[] hashes = new int[64]; // hash of each interned identifier, indexed by id
+    private int[] slots = new int[128]; // open addressing hash table of id + 1, 0 marks an empty slot
+    private int size = 0;
+
+    /// Intern the identifier spanning `start` to `end` in `source`
+    public Ident intern(CharSequence source, int start, int end) {
+        int id = id(source, start, end);
+        return idents[id];
+    }
+
+    /// Id of the identifier spanning `start` to `end` in `source`, interning it if it has not been seen before
+    public int id(CharSequence source, int start, int end) {
+        int hash = hash(source, start, end);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) return insert(slot, hash, source.subSequence(start, end).toString());
+            String name = idents[id].name();
+            if (hashes[id] == hash && name.length() == end - start && ScannerUtils.regionMatches(source, start, name))
+                return id;
+        }
+    }
+
+    /// Intern the identifier spanning the ASCII bytes from `start` to `end` in `source`, comparing them with the
+    /// names in the table as they are and only decoding them the first time the name is seen
+    Ident intern(MemorySegment source, long start, long end) {
+        int hash = hash(source, start, end);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                byte[] name = source.asSlice(start, end - start).toArray(JAVA_BYTE);
+                id = insert(slot, hash, new String(name, StandardCharsets.ISO_8859_1));
+                return idents[id];
+            }
+            if (hashes[id] == hash && matches(source, start, end, idents[id].name())) return idents[id];
+        }
+    }
+
+    /// Identifier with the given id
+    public Ident ident(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException("No identifier with id " + id);
+        return idents[id];
+    }
+
+    /// Number of distinct identifiers interned so far
+    public int size() {
+        return size;
+    }
+
+    private int insert(int slot, int hash, String name) {
+        if (size == idents.length) {
+            idents = Arrays.copyOf(idents, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        idents[id] = new Ident(name);
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+
+        // keep the load factor at or below a half
+        if (size * 2 > slots.length) rehash();
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+    }
+
+    /// Same hash as [String#hashCode()], spread so that the low bits used for the slot index are well mixed
+    private static int hash(CharSequence source, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) h = 31 * h + source.charAt(i);
+        return h ^ (h >>> 16);
+    }
+
+    /// Same hash as that of the string the ASCII bytes from `start` to `end` decode to
+    private static int hash(MemorySegment source, long start, long end) {
+        int h = 0;
+        for (long i = start; i < end; i++) h = 31 * h + source.get(JAVA_BYTE, i);
+        return h ^ (h >>> 16);
+    }
+
+    /// Returns true if the ASCII bytes from `start` to `end` in `source` spell `name`
+    private static boolean matches(MemorySegment source, long start, long end, String name) {
+        if (name.length() != end - start) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (source.get(JAVA_BYTE, start + i) != name.charAt(i)) return false;
+        }
+        return true;
+    }
+}
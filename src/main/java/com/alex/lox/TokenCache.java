@@ -0,0 +1,225 @@
+package com.alex.lox;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import static com.alex.lox.TokenType.*;
+
+/// On-disk cache of scan results, so that unchanged sources are read back instead of being scanned again.
+///
+/// Entries are named after a SHA-256 hash of the source bytes, the scanner [#VERSION] and the maximum number of errors
+/// scans stop after (which changes the result of sources with more errors), and hold a compact binary
+/// form of the [Scanner.ScanResult]: a pool of the distinct identifiers and literals, then one fixed-size record per
+/// token (kind, line, offset and pool index) and the errors, followed by a CRC32C of all of it. Entries are memory
+/// mapped when read; a corrupt or unreadable entry is treated as a miss and rewritten. Failing to write an entry (a
+/// full disk, a read-only directory) only loses the caching: the fresh scan result is still returned.
+public final class TokenCache {
+    /// Version of both the scanner output and the entry format. Bump it whenever either changes, so that entries
+    /// written by an older version are never read
+    static final int VERSION = 2;
+    private static final int MAGIC = 0x4A4C5854; // "JLXT"
+    private static final int NO_VALUE = -1; // pool index of tokens without an identifier or literal value
+
+    // Pool entry tags
+    private static final byte IDENT = 0, STRING = 1, NUMBER = 2;
+
+    private static final Symbol[] SYMBOLS = Symbol.values();
+
+    private final Path directory;
+    private final int maxErrors;
+
+    public TokenCache(Path directory) {
+        this(directory, ScanErrors.UNLIMITED);
+    }
+
+    /// @param maxErrors errors after which scans are aborted, as with [Scanner#withMaxErrors]
+    public TokenCache(Path directory, int maxErrors) {
+        if (maxErrors < 1) throw new IllegalArgumentException("maxErrors must be positive: " + maxErrors);
+        this.directory = directory;
+        this.maxErrors = maxErrors;
+    }
+
+    /// Scan a UTF-8 encoded file, reusing the cached result if the same source has been scanned before
+    public Scanner.ScanResult scan(Path file) throws IOException {
+        try (Arena arena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MemorySegment source = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            Path entry = directory.resolve(key(source, maxErrors) + ".tokens");
+
+            if (Files.isRegularFile(entry)) {
+                try {
+                    return read(entry);
+                } catch (IOException | RuntimeException e) {
+                    // corrupt, truncated or concurrently replaced entry: fall through and rescan
+                }
+            }
+
+            var result = new Utf8Scanner(source).withMaxErrors(maxErrors).scanTokens();
+            try {
+                write(entry, result);
+            } catch (IOException | RuntimeException e) {
+                // not cached: the next scan of this source misses again
+            }
+            return result;
+        }
+    }
+
+    /// Hash of the scanner version, the maximum number of errors and the source bytes, as a hex string
+    private static String key(MemorySegment source, int maxErrors) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(ByteBuffer.allocate(2 * Integer.BYTES).putInt(VERSION).putInt(maxErrors).flip());
+
+        // byte buffers are limited to 2GB, so hash large sources in slices
+        final long slice = 1L << 30;
+        for (long offset = 0; offset < source.byteSize(); offset += slice) {
+            digest.update(source.asSlice(offset, Math.min(slice, source.byteSize() - offset)).asByteBuffer());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void write(Path entry, Scanner.ScanResult result) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "entry", ".tmp");
+        try {
+            var crc = new CRC32C();
+            try (var out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)), crc))) {
+                writePayload(out, result);
+                // the checksum itself is written after the checked payload
+                out.flush();
+                out.writeInt((int) crc.getValue());
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writePayload(DataOutputStream out, Scanner.ScanResult result) throws IOException {
+        Map<TokenType, Integer> pool = new HashMap<>();
+        List<TokenType> values = new ArrayList<>();
+        for (Token t : result.tokens()) {
+            if (!(t.type() instanceof Symbol) && pool.putIfAbsent(t.type(), values.size()) == null) values.add(t.type());
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(values.size());
+        out.writeInt(result.tokens().size());
+        out.writeInt(result.errors().size());
+
+        for (TokenType value : values) {
+            switch (value) {
+                case Ident i -> {
+                    out.writeByte(IDENT);
+                    writeString(out, i.name());
+                }
+                case StrLit s -> {
+                    out.writeByte(STRING);
+                    writeString(out, s.value());
+                }
+                case NumLit n -> {
+                    out.writeByte(NUMBER);
+                    out.writeDouble(n.value());
+                }
+                case Symbol s -> throw new IllegalStateException("Symbols are not pooled: " + s);
+            }
+        }
+
+        for (Token t : result.tokens()) {
+            if (t.type() instanceof Symbol s) {
+                out.writeByte(s.ordinal());
+                out.writeInt(NO_VALUE);
+            } else {
+                out.writeByte(SYMBOLS.length);
+                out.writeInt(pool.get(t.type()));
+            }
+            out.writeInt(t.loc().line());
+            out.writeInt(t.loc().offset());
+        }
+
+        for (Scanner.ScanError e : result.errors()) {
+            out.writeInt(e.loc().line());
+            out.writeInt(e.loc().offset());
+            out.writeInt(e.length());
+            writeString(out, e.message());
+        }
+    }
+
+    private static Scanner.ScanResult read(Path entry) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        var crc = new CRC32C();
+        crc.update(in.slice(0, in.limit() - Integer.BYTES));
+        if ((int) crc.getValue() != in.getInt(in.limit() - Integer.BYTES)) throw new IOException("Checksum mismatch in " + entry);
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) throw new IOException("Not a token cache entry: " + entry);
+
+        TokenType[] values = new TokenType[in.getInt()];
+        Token[] tokens = new Token[in.getInt()];
+        Scanner.ScanError[] errors = new Scanner.ScanError[in.getInt()];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = switch (in.get()) {
+                case IDENT -> new Ident(readString(in));
+                case STRING -> new StrLit(readString(in));
+                case NUMBER -> new NumLit(in.getDouble());
+                default -> throw new IOException("Bad pool entry in " + entry);
+            };
+        }
+
+        for (int i = 0; i < tokens.length; i++) {
+            int kind = in.get();
+            int value = in.getInt();
+            TokenType type = kind < SYMBOLS.length ? SYMBOLS[kind] : values[value];
+            tokens[i] = new Token(type, new Location(in.getInt(), in.getInt()));
+        }
+
+        for (int i = 0; i < errors.length; i++) {
+            var loc = new Location(in.getInt(), in.getInt());
+            int length = in.getInt();
+            errors[i] = new Scanner.ScanError(loc, readString(in), length);
+        }
+
+        return new Scanner.ScanResult(List.of(tokens), List.of(errors));
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
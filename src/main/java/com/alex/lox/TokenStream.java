@@ -0,0 +1,31 @@
+package com.alex.lox;
+
+import java.util.List;
+
+/// A source of tokens which are scanned on demand, one at a time
+public interface TokenStream {
+    /// Scan and return the next token. Once the source is exhausted an `EOF` token is returned, and every further
+    /// call returns another `EOF` token at the same location
+    Token nextToken();
+
+    /// Errors observed so far, in source order
+    List<Scanner.ScanError> errors();
+
+    /// Stream over the tokens of a completed scan
+    static TokenStream of(Scanner.ScanResult result) {
+        return new TokenStream() {
+            private int next = 0;
+
+            @Override
+            public Token nextToken() {
+                var tokens = result.tokens();
+                return tokens.get(next < tokens.size() - 1 ? next++ : tokens.size() - 1);
+            }
+
+            @Override
+            public List<Scanner.ScanError> errors() {
+                return result.errors();
+            }
+        };
+    }
+}
@@ -0,0 +1,147 @@
+package com.alex.lox;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import static com.alex.lox.TokenType.*;
+import static com.alex.lox.TokenType.Symbol.EOF;
+
+/// Writes the tokens and errors of a scan to a channel as they are scanned, encoding them as UTF-8 through fixed
+/// size buffers. Output starts as soon as the first buffer fills, and memory use does not depend on the size of the
+/// source.
+public final class TokenWriter implements Flushable {
+    /// Output formats
+    public enum Format {
+        /// Lexemes separated by `·` on one line, then one line per error
+        HUMAN,
+        /// One tab separated record per line: `T line column kind value` for each token, then
+        /// `E line column message` for each error. The kind is the [Symbol] name, or `IDENT`, `STRING` or `NUMBER`.
+        /// The value is the identifier name, string contents or number for those kinds, and empty for symbols.
+        /// Backslashes, tabs and line breaks in values and messages are escaped as `\\`, `\t`, `\n` and `\r`
+        TSV
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final Format format;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE); // text not encoded yet
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE); // encoded text not written yet
+
+    public TokenWriter(WritableByteChannel channel, Format format) {
+        this.channel = channel;
+        this.format = format;
+    }
+
+    /// Write every token of the stream, up to and including `EOF`, followed by the errors of the scan, and flush
+    /// @return the number of errors written
+    public int dump(TokenStream scanner) throws IOException {
+        Token token = scanner.nextToken();
+        if (format == Format.HUMAN) {
+            append(token.lexeme());
+            while (token.type() != EOF) {
+                token = scanner.nextToken();
+                append('·').append(token.lexeme());
+            }
+            append('\n');
+        } else {
+            writeRecord(token);
+            while (token.type() != EOF) {
+                token = scanner.nextToken();
+                writeRecord(token);
+            }
+        }
+
+        var errors = scanner.errors();
+        for (var e : errors) {
+            if (format == Format.HUMAN) {
+                append(e.toString()).append('\n');
+            } else {
+                append("E\t").append(e.loc().line()).append('\t').append(e.loc().offset()).append('\t');
+                appendEscaped(e.message()).append('\n');
+            }
+        }
+        flush();
+        return errors.size();
+    }
+
+    private void writeRecord(Token token) throws IOException {
+        append("T\t").append(token.loc().line()).append('\t').append(token.loc().offset()).append('\t');
+        switch (token.type()) {
+            case Symbol s -> append(s.name()).append('\t');
+            case Ident i -> append("IDENT\t").append(i.name());
+            case StrLit s -> append("STRING\t").appendEscaped(s.value());
+            case NumLit n -> append("NUMBER\t").append(Double.toString(n.value()));
+        }
+        append('\n');
+    }
+
+    /// Encode and write out everything appended so far
+    @Override
+    public void flush() throws IOException {
+        encode(true);
+        encoder.reset();
+        writeBytes();
+    }
+
+    private TokenWriter append(CharSequence text) throws IOException {
+        for (int i = 0; i < text.length(); ) {
+            if (!chars.hasRemaining()) encode(false);
+            int n = Math.min(text.length() - i, chars.remaining());
+            chars.append(text, i, i + n);
+            i += n;
+        }
+        return this;
+    }
+
+    private TokenWriter append(char c) throws IOException {
+        if (!chars.hasRemaining()) encode(false);
+        chars.put(c);
+        return this;
+    }
+
+    private TokenWriter append(int i) throws IOException {
+        return append(Integer.toString(i));
+    }
+
+    private TokenWriter appendEscaped(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> append('\\').append('\\');
+                case '\t' -> append('\\').append('t');
+                case '\n' -> append('\\').append('n');
+                case '\r' -> append('\\').append('r');
+                default -> append(c);
+            }
+        }
+        return this;
+    }
+
+    /// Encode the buffered chars, writing out the encoded bytes whenever their buffer fills. Unless `endOfInput`,
+    /// a trailing high surrogate is kept back until the rest of its pair is appended
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        for (;;) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isUnderflow()) break;
+            writeBytes();
+        }
+        chars.compact();
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) channel.write(bytes);
+        bytes.clear();
+    }
+}
@@ -0,0 +1,66 @@
+package com.alex.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/// Workload for AOT cache training runs (`jlox --train <corpus>...`), driving every scanner and the compiler and VM
+/// over a corpus of representative scripts, the way the CLI does, so that the classes they need are loaded and
+/// linked and their hot methods profiled.
+///
+/// Scans are limited to [Lox#MAX_ERRORS] errors as in the CLI, so that sources with more errors than that train the
+/// aborted scans too. All output is discarded. See the `aot` profile in `pom.xml` for how the cache is produced, and
+/// `bin/aot-startup` for measuring what it saves.
+final class Training {
+    /// Times each source is processed. Enough for the scanning and interpreter loops to be profiled as hot
+    static final int ITERATIONS = 200;
+
+    private static final PrintStream NO_OUTPUT = new PrintStream(OutputStream.nullOutputStream());
+    private static final WritableByteChannel NO_CHANNEL = Channels.newChannel(OutputStream.nullOutputStream());
+
+    private Training() {}
+
+    /// Train on the given files, and the Lox sources found anywhere under the given directories
+    /// @return the number of sources trained on
+    static int run(List<Path> corpus) throws IOException, InterruptedException {
+        List<Path> files = BatchScanner.expand(corpus);
+        List<String> sources = new ArrayList<>(files.size());
+        for (Path file : files) sources.add(Files.readString(file));
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (int f = 0; f < files.size(); f++) {
+                String source = sources.get(f);
+
+                // running a script, with each of the scanners the CLI picks from
+                try (var scanner = Utf8Scanner.open(files.get(f)).withMaxErrors(Lox.MAX_ERRORS)) {
+                    Lox.run(scanner, new Vm(NO_OUTPUT), NO_OUTPUT);
+                }
+                try (var scanner = new StreamingScanner(new StringReader(source)).withMaxErrors(Lox.MAX_ERRORS)) {
+                    Lox.run(scanner, new Vm(NO_OUTPUT), NO_OUTPUT);
+                }
+                Lox.run(TokenStream.of(local(source).scanTokens()), new Vm(NO_OUTPUT), NO_OUTPUT);
+
+                // dumping tokens, and the packed scans
+                new TokenWriter(NO_CHANNEL, TokenWriter.Format.values()[i % 2])
+                        .dump(TokenStream.of(local(source).scanTokens()));
+                local(source).scanPacked();
+                local(source).scanOffsets();
+            }
+        }
+
+        new BatchScanner().scan(files);
+        return files.size();
+    }
+
+    /// The thread's reusable scanner, limited to as many errors as in the CLI
+    private static Scanner local(String source) {
+        return Scanner.local(source).withMaxErrors(Lox.MAX_ERRORS);
+    }
+}
@@ -0,0 +1,448 @@
+package com.alex.lox;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import static com.alex.lox.ScannerUtils.*;
+import static com.alex.lox.TokenType.Symbol.*;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+/// Scanner working directly on the UTF-8 bytes of a source held in a [MemorySegment], typically a memory-mapped file.
+///
+/// The token grammar of Lox is pure ASCII, so it is matched byte by byte without decoding the source first. Only the
+/// contents of string literals (and unexpected non-ASCII characters, for error messages) are ever decoded, which
+/// means scanning of a mapped file starts immediately, with no decode pass and no copy of the source onto the heap.
+///
+/// Line offsets are counted in UTF-16 code units, so the produced tokens and errors are identical to those of
+/// [Scanner] scanning the decoded source.
+///
+/// Runs of whitespace, comments and string bodies are skipped with bulk [ByteSearch]es. In vectorized mode these use
+/// the incubating Vector API to compare many bytes per instruction, falling back to plain loops if the
+/// `jdk.incubator.vector` module is not enabled.
+///
+/// Offsets into the source are `long`s, so sources larger than 2GB can be scanned. Lines and line offsets are still
+/// `int`s, as in every [Location]: a source with a line longer than [Integer#MAX_VALUE] characters, or more lines
+/// than that, gets an error there and its scan is aborted, rather than reporting wrapped around locations.
+///
+/// [#scanPacked] stores the tokens off-heap, for callers which need all the tokens of such a source at once while
+/// keeping the Java heap small. Scanning with [#nextToken()] holds no tokens at all, which is what the CLI does.
+public class Utf8Scanner implements TokenStream, AutoCloseable {
+    private final MemorySegment source;
+    private final long size;
+    private final Arena arena; // arena owning the source if it was mapped by this scanner, otherwise null
+    private final ByteSearch search;
+    private final ScanErrors errors = new ScanErrors();
+    private final SymbolTable symbols = new SymbolTable();
+
+    private byte[] scratch = new byte[64]; // buffer lexemes are copied into before being turned into strings
+
+    private long start = 0; // byte offset of the first byte in the current lexeme being scanned
+    private long current = 0; // byte offset of the byte currently being considered
+    private int line = 0; // line number we are currently on
+    private int curentTokenStartLineOffset = 0; // line offset of the start of the current token, used for error reporting
+    private int lineOffset = 0; // offset into the current line in UTF-16 code units, used for error reporting
+
+    private Token scanned; // token produced by the last call to scanToken, if any
+    private SegmentTokens packed; // off-heap token storage, if scanning with scanPacked
+    private ScanMetrics metrics; // metrics the scan is reported to, or null
+    private ScanRecorder recording; // the scan, once the first token has been asked for
+
+    public Utf8Scanner(MemorySegment source) {
+        this(source, false);
+    }
+
+    /// @param vectorized whether to use the Vector API to skip whitespace, comments and string bodies
+    public Utf8Scanner(MemorySegment source, boolean vectorized) {
+        this(source, null, vectorized);
+    }
+
+    private Utf8Scanner(MemorySegment source, Arena arena, boolean vectorized) {
+        this.source = source;
+        this.size = source.byteSize();
+        this.arena = arena;
+        this.search = vectorized ? ByteSearch.vectorized() : ByteSearch.scalar();
+    }
+
+    /// Memory-map a UTF-8 encoded file and create a scanner over it. The mapping is released when the scanner is
+    /// closed, and the scanner may only be used from the thread which opened it
+    public static Utf8Scanner open(Path path) throws IOException {
+        return open(path, false);
+    }
+
+    /// Memory-map a UTF-8 encoded file and create a scanner over it, optionally in vectorized mode
+    public static Utf8Scanner open(Path path, boolean vectorized) throws IOException {
+        Arena arena = Arena.ofConfined();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Utf8Scanner(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena), arena, vectorized);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /// Scan the whole source, returning all tokens and errors
+    public Scanner.ScanResult scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type() != EOF);
+        return new Scanner.ScanResult(List.copyOf(tokens), errors.list());
+    }
+
+    /// Scan the whole source into off-heap [SegmentTokens] allocated from `arena`, which only decode token values
+    /// when asked for. The tokens can be read until the arena is closed, and as long as the source stays mapped
+    public SegmentTokens scanPacked(Arena arena) {
+        if (recording == null) recording = new ScanRecorder(metrics);
+        packed = new SegmentTokens(source, arena);
+        while (!isEof()) {
+            start = current;
+            scanToken();
+        }
+        packed.add(EOF.ordinal(), current, current, line, lineOffset);
+        packed.setErrors(errors.list());
+        recording.count(EOF.ordinal());
+        recording.end(current, errors.size(), true);
+        var tokens = packed;
+        // the tokens belong to the caller now, and further scans must not add to them
+        packed = null;
+        return tokens;
+    }
+
+    @Override
+    public Token nextToken() {
+        if (recording == null) recording = new ScanRecorder(metrics);
+        scanned = null;
+        while (scanned == null) {
+            // advance the start pointer to the current location
+            start = current;
+            if (isEof()) {
+                recording.count(EOF);
+                recording.end(current, errors.size(), false);
+                return new Token(EOF, new Location(line, lineOffset));
+            }
+            scanToken();
+        }
+        recording.count(scanned.type());
+        return scanned;
+    }
+
+    @Override
+    public List<Scanner.ScanError> errors() {
+        return errors.list();
+    }
+
+    /// Abort the scan once it has found `maxErrors` errors, as [Scanner#withMaxErrors] does
+    /// @return this scanner
+    public Utf8Scanner withMaxErrors(int maxErrors) {
+        errors.setMaxErrors(maxErrors);
+        return this;
+    }
+
+    /// Report the scan to the given metrics, as [Scanner#withMetrics] does, once its `EOF` token has been scanned.
+    /// The number of characters reported is the number of bytes scanned
+    /// @return this scanner
+    public Utf8Scanner withMetrics(ScanMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /// Returns true if bulk searches use the Vector API, i.e. vectorized mode was asked for and is available
+    public boolean isVectorized() {
+        return search != ByteSearch.scalar();
+    }
+
+    @Override
+    public void close() {
+        if (arena != null) arena.close();
+    }
+
+    /// Scans source for the next token, dispatching on the class of its first byte as [Scanner] does
+    private void scanToken() {
+        byte c = advance();
+        switch (charClass(c)) {
+            case SINGLE -> addToken(SINGLE_CHAR_TOKENS[c]);
+            case EQUALS_SUFFIX -> addToken(readAheadMatch('=') ? EQUALS_SUFFIXED_TOKENS[c] : SINGLE_CHAR_TOKENS[c]);
+            case SLASH_OR_COMMENT -> commentOrSlash();
+            case NEWLINE -> newLine();
+            case QUOTE -> stringLiteral();
+            case WHITESPACE -> whitespace();
+            case DIGIT -> number();
+            case ALPHA -> identifier();
+            default -> unexpectedCharacter();
+        }
+
+        // a line offset wraps around from tokens adding a few characters at a time
+        if (lineOffset < 0) lineTooLong();
+        curentTokenStartLineOffset = lineOffset;
+    }
+
+    /// Abort the scan because the current line is too long for line offsets to be reported
+    private void lineTooLong() {
+        lineOffset = curentTokenStartLineOffset;
+        errors.abort(new Location(line, lineOffset), "Line longer than " + Integer.MAX_VALUE + " characters, scanning stopped");
+        current = size;
+    }
+
+    /// Abort the scan because it has too many lines for line numbers to be reported
+    private void tooManyLines() {
+        errors.abort(new Location(line, lineOffset), "More than " + Integer.MAX_VALUE + " lines, scanning stopped");
+        current = size;
+    }
+
+    /// Add `chars` to the line offset, or abort the scan if the line gets too long
+    private void addToLineOffset(long chars) {
+        if (lineOffset + chars > Integer.MAX_VALUE) lineTooLong();
+        else lineOffset += (int) chars;
+    }
+
+    /// Report the character starting at `start`, decoding it first if it is not ASCII, as part of a run with any
+    /// directly before it. Runs are measured in UTF-16 code units, as in the decoded source
+    private void unexpectedCharacter() {
+        if (c(start) >= 0) {
+            unexpected(start, (char) c(start));
+        } else {
+            // the lead byte has already been consumed, skip the continuation bytes of the sequence
+            while (!isEof() && isContinuation(peek())) advance();
+            String decoded = decode(start, current);
+            lineOffset = curentTokenStartLineOffset;
+            for (int i = 0; i < decoded.length(); i++) {
+                lineOffset++;
+                // the second half of a surrogate pair directly follows the first
+                unexpected(i == 0 ? start : current, decoded.charAt(i));
+            }
+        }
+        if (errors.aborted()) current = size;
+    }
+
+    /// Report the unexpected character `c`, which starts at byte `offset` and ends at the current byte
+    private void unexpected(long offset, char c) {
+        if (!errors.extendRun(offset, current, c)) errors.unexpected(new Location(line, lineOffset), current, c);
+    }
+
+    /// Handle new line, incrementing line number and resetting line offset
+    private void newLine() {
+        if (line == Integer.MAX_VALUE) {
+            tooManyLines();
+            return;
+        }
+        lineOffset = 0;
+        line++;
+    }
+
+    /// Consume the rest of a run of whitespace
+    private void whitespace() {
+        long end = search.skipWhitespace(source, current, size);
+        addToLineOffset(end - current);
+        if (!errors.aborted()) current = end;
+    }
+
+    /// Handle comment or slash alternative
+    private void commentOrSlash() {
+        if (readAheadMatch('/')) {
+            long newline = search.indexOf(source, current, size, (byte) '\n');
+            // the newline resets the line offset, so it only needs counting for a comment ending the source
+            if (newline == size) addToLineOffset(search.utf16Length(source, current, size));
+            if (!errors.aborted()) current = newline;
+        } else {
+            addToken(SLASH);
+        }
+    }
+
+    /// Consume the next byte conditionally on whether it matches expected, used for double-character lexemes
+    private boolean readAheadMatch(char expected) {
+        if (isEof()) return false;
+        if (c(current) != expected) return false;
+
+        advance();
+        return true;
+    }
+
+    /// Return the current byte without consuming
+    private byte peek() {
+        return isEof() ? 0 : c(current);
+    }
+
+    /// Returns the next byte without consuming. This language only needs two character lookahead
+    private byte peekNext() {
+        if (current + 1 >= size) return 0;
+        return c(current + 1);
+    }
+
+    /// Return the byte under the current pointer and consume. Line offsets count UTF-16 code units: continuation
+    /// bytes do not count, and the lead byte of a 4-byte sequence (a surrogate pair once decoded) counts twice
+    private byte advance() {
+        byte b = c(current++);
+        if (b >= 0) lineOffset++;
+        else if (!isContinuation(b)) lineOffset += (b & 0xF8) == 0xF0 ? 2 : 1;
+        return b;
+    }
+
+    /// Consume a string (between ""), handling EOF case for unterminated string
+    private void stringLiteral() {
+        long quote = search.indexOf(source, current, size, (byte) '"');
+
+        // a newline inside a literal counts towards the line offset of the next line, like any other character
+        long lastNewline = search.lastIndexOf(source, current, quote, (byte) '\n');
+        if (lastNewline < 0) {
+            addToLineOffset(search.utf16Length(source, current, quote));
+        } else {
+            long lines = line + search.count(source, current, lastNewline + 1, (byte) '\n');
+            long offset = search.utf16Length(source, lastNewline, quote);
+            if (lines > Integer.MAX_VALUE) tooManyLines();
+            else if (offset > Integer.MAX_VALUE) lineTooLong();
+            else {
+                line = (int) lines;
+                lineOffset = (int) offset;
+            }
+        }
+        if (errors.aborted()) return;
+        current = quote;
+
+        if (isEof()) {
+            errors.add(new Location(line, lineOffset), "Unterminated string literal");
+            return;
+        }
+
+        advance();
+
+        if (packed != null) {
+            addPacked(PackedTokens.STRING);
+            return;
+        }
+        // extract the string literal contents without the quote marks
+        addToken(new StrLit(decode(start + 1, current - 1)));
+    }
+
+    /// Consume a numerical literal
+    private void number() {
+        while (charClass(peek()) == DIGIT) advance();
+
+        // check to see whether we have a decimal point number
+        if (peek() == '.' && charClass(peekNext()) == DIGIT) {
+            do advance(); while (charClass(peek()) == DIGIT);
+        }
+
+        if (packed != null) addPacked(PackedTokens.NUMBER);
+        else addToken(new NumLit(parseNumber(start, current)));
+    }
+
+    /// Parse the number literal between `from` and `to` straight from the source bytes, only falling back to
+    /// [Double#parseDouble] when the literal is too long to be converted exactly
+    private double parseNumber(long from, long to) {
+        long significand = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (long i = from; i < to; i++) {
+            byte b = c(i);
+            if (b == '.') {
+                fraction = true;
+                continue;
+            }
+            significand = significand * 10 + (b - '0');
+            if (fraction) fractionDigits++;
+            if (significand > ScannerUtils.MAX_EXACT_SIGNIFICAND) return Double.parseDouble(ascii(from, to));
+        }
+
+        double value = ScannerUtils.exactDecimal(significand, fractionDigits);
+        return Double.isNaN(value) ? Double.parseDouble(ascii(from, to)) : value;
+    }
+
+    /// Consume an identifier or keyword. Identifiers are interned, so every occurrence of a name is the same [Ident]
+    private void identifier() {
+        while (charClass(peek()) >= DIGIT) advance();
+        Symbol keyword = keyword(start, current);
+        if (packed != null) {
+            addPacked(keyword != null ? keyword.ordinal() : PackedTokens.IDENT);
+        } else if (keyword != null) {
+            addToken(keyword);
+        } else {
+            addToken(symbols.intern(source, start, current));
+        }
+    }
+
+    private void addToken(TokenType t) {
+        if (packed != null) addPacked(((Symbol) t).ordinal());
+        else scanned = new Token(t, new Location(line, curentTokenStartLineOffset));
+    }
+
+    /// Add a token of the given [PackedTokens] kind to the off-heap storage
+    private void addPacked(int kind) {
+        packed.add(kind, start, current, line, curentTokenStartLineOffset);
+        recording.count(kind);
+    }
+
+    /// Keyword spelt by the bytes between `from` and `to`, or null if they are not a keyword. Looked up without
+    /// creating a string, by the bytes packed into a `long`
+    private Symbol keyword(long from, long to) {
+        if (to - from > MAX_KEYWORD_LENGTH) return null;
+        long code = 0;
+        for (long i = from; i < to; i++) code = code << 8 | c(i);
+        int found = Arrays.binarySearch(KEYWORD_CODES, code);
+        return found >= 0 ? KEYWORDS[found] : null;
+    }
+
+    /// Returns true if we have hit the end of the source
+    private boolean isEof() {
+        return current >= size;
+    }
+
+    private byte c(long offset) {
+        return source.get(JAVA_BYTE, offset);
+    }
+
+    /// Copy the bytes between `from` and `to` into the scratch buffer, returning their length
+    private int copy(long from, long to) {
+        int length = Math.toIntExact(to - from);
+        if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        MemorySegment.copy(source, JAVA_BYTE, from, scratch, 0, length);
+        return length;
+    }
+
+    /// Bytes between `from` and `to` as a string, for lexemes which are known to be ASCII
+    private String ascii(long from, long to) {
+        int length = copy(from, to);
+        return new String(scratch, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /// Decode the UTF-8 bytes between `from` and `to`
+    private String decode(long from, long to) {
+        int length = copy(from, to);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static final int MAX_KEYWORD_LENGTH = Long.BYTES;
+    /// Bytes of each keyword packed into a `long`, in ascending order, and the keyword for each
+    private static final long[] KEYWORD_CODES;
+    private static final Symbol[] KEYWORDS;
+
+    static {
+        var keywords = new TreeMap<Long, Symbol>();
+        Scanner.RESERVED_WORDS.forEach((name, keyword) -> {
+            long code = 0;
+            for (byte b : name.getBytes(StandardCharsets.US_ASCII)) code = code << 8 | b;
+            keywords.put(code, (Symbol) keyword);
+        });
+        KEYWORD_CODES = keywords.keySet().stream().mapToLong(Long::longValue).toArray();
+        KEYWORDS = keywords.values().toArray(Symbol[]::new);
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    /// Class of a byte in [ScannerUtils]' character classes. Bytes of multibyte sequences are all [ScannerUtils#OTHER]
+    private static byte charClass(byte b) {
+        return b >= 0 ? CHAR_CLASSES[b] : OTHER;
+    }
+}
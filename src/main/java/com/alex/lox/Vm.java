@@ -0,0 +1,217 @@
+package com.alex.lox;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+/// Stack machine running the bytecode produced by [Compiler].
+///
+/// Values are held unboxed, as a pair of parallel slots: a `double` for numbers and an `Object` which is `null` for
+/// numbers and otherwise the value itself (a `String`, `Boolean` or nil). Arithmetic therefore never allocates, and
+/// no bit patterns are reserved inside the doubles, so every number (NaN included) is represented as is.
+///
+/// Global variables are kept in the same representation, indexed by the id of their name in [#globals()], and
+/// persist from one [#execute] to the next so that a REPL can build on earlier lines.
+public final class Vm {
+    public static final class RuntimeError extends RuntimeException {
+        private final int line;
+
+        RuntimeError(int line, String message) {
+            super(message);
+            this.line = line;
+        }
+
+        /// Source line of the instruction which failed
+        public int line() {
+            return line;
+        }
+    }
+
+    /// The nil value
+    private enum Nil {
+        NIL;
+
+        @Override
+        public String toString() {
+            return "nil";
+        }
+    }
+
+    private static final Object UNDEFINED = new Object(); // value of globals which have not been defined yet
+
+    private final PrintStream out;
+    private final SymbolTable globals = new SymbolTable();
+    private double[] globalNumbers = new double[0];
+    private Object[] globalObjects = new Object[0];
+    private long maxInstructions = Long.MAX_VALUE; // instructions each execute may run in loops
+
+    /// @param out stream `print` statements write to
+    public Vm(PrintStream out) {
+        this.out = out;
+    }
+
+    /// Table assigning ids to global variable names, to compile scripts run by this VM with
+    public SymbolTable globals() {
+        return globals;
+    }
+
+    /// Stop each [#execute] with a [RuntimeError] once it has run about `maxInstructions` instructions, so that a
+    /// script looping forever doesn't run forever. Only loops are counted, by the length of their body each time
+    /// round: code outside loops runs at most once, so is already bounded by the size of the script
+    /// @return this VM
+    public Vm withInstructionLimit(long maxInstructions) {
+        if (maxInstructions < 1) throw new IllegalArgumentException("maxInstructions must be positive: " + maxInstructions);
+        this.maxInstructions = maxInstructions;
+        return this;
+    }
+
+    /// Run a compiled script
+    /// @throws RuntimeError if the script fails, e.g. on operands of the wrong type, or runs into the instruction
+    /// limit
+    public void execute(Chunk chunk) {
+        if (globalObjects.length < globals.size()) {
+            int defined = globalObjects.length;
+            globalNumbers = Arrays.copyOf(globalNumbers, globals.size());
+            globalObjects = Arrays.copyOf(globalObjects, globals.size());
+            Arrays.fill(globalObjects, defined, globalObjects.length, UNDEFINED);
+        }
+
+        // everything the loop touches is held in locals, which the JIT can keep in registers
+        final double[] globalNumbers = this.globalNumbers;
+        final Object[] globalObjects = this.globalObjects;
+        final int[] code = chunk.code();
+        final double[] constantNumbers = chunk.numbers();
+        final Object[] constantObjects = chunk.objects();
+        final double[] numbers = new double[chunk.maxStack()];
+        final Object[] objects = new Object[chunk.maxStack()];
+        int sp = 0; // index of the first free stack slot
+        int ip = 0; // index of the next instruction
+        long budget = maxInstructions; // instructions left to run in loops
+
+        for (;;) {
+            int instruction = code[ip++];
+            switch (Op.opcode(instruction)) {
+                case Op.CONSTANT -> {
+                    int index = Op.operand(instruction);
+                    numbers[sp] = constantNumbers[index];
+                    objects[sp++] = constantObjects[index];
+                }
+                case Op.NIL -> objects[sp++] = Nil.NIL;
+                case Op.TRUE -> objects[sp++] = Boolean.TRUE;
+                case Op.FALSE -> objects[sp++] = Boolean.FALSE;
+                case Op.POP -> objects[--sp] = null;
+                case Op.GET_LOCAL -> {
+                    int slot = Op.operand(instruction);
+                    numbers[sp] = numbers[slot];
+                    objects[sp++] = objects[slot];
+                }
+                case Op.SET_LOCAL -> {
+                    int slot = Op.operand(instruction);
+                    numbers[slot] = numbers[sp - 1];
+                    objects[slot] = objects[sp - 1];
+                }
+                case Op.GET_GLOBAL -> {
+                    int id = Op.operand(instruction);
+                    if (globalObjects[id] == UNDEFINED) throw undefined(chunk, ip, id);
+                    numbers[sp] = globalNumbers[id];
+                    objects[sp++] = globalObjects[id];
+                }
+                case Op.DEFINE_GLOBAL -> {
+                    int id = Op.operand(instruction);
+                    globalNumbers[id] = numbers[--sp];
+                    globalObjects[id] = objects[sp];
+                    objects[sp] = null;
+                }
+                case Op.SET_GLOBAL -> {
+                    int id = Op.operand(instruction);
+                    if (globalObjects[id] == UNDEFINED) throw undefined(chunk, ip, id);
+                    globalNumbers[id] = numbers[sp - 1];
+                    globalObjects[id] = objects[sp - 1];
+                }
+                case Op.EQUAL, Op.NOT_EQUAL -> {
+                    sp--;
+                    Object a = objects[sp - 1], b = objects[sp];
+                    boolean equal = a == null ? b == null && numbers[sp - 1] == numbers[sp] : Objects.equals(a, b);
+                    objects[sp - 1] = equal == (Op.opcode(instruction) == Op.EQUAL);
+                    objects[sp] = null;
+                }
+                case Op.GREATER, Op.GREATER_EQUAL, Op.LESS, Op.LESS_EQUAL -> {
+                    sp--;
+                    if (objects[sp - 1] != null || objects[sp] != null) throw error(chunk, ip, "Operands must be numbers.");
+                    double a = numbers[sp - 1], b = numbers[sp];
+                    objects[sp - 1] = switch (Op.opcode(instruction)) {
+                        case Op.GREATER -> a > b;
+                        case Op.GREATER_EQUAL -> a >= b;
+                        case Op.LESS -> a < b;
+                        default -> a <= b;
+                    };
+                }
+                case Op.ADD -> {
+                    sp--;
+                    if (objects[sp - 1] == null && objects[sp] == null) {
+                        numbers[sp - 1] += numbers[sp];
+                    } else if (objects[sp - 1] instanceof String a && objects[sp] instanceof String b) {
+                        objects[sp - 1] = a + b;
+                        objects[sp] = null;
+                    } else {
+                        throw error(chunk, ip, "Operands must be two numbers or two strings.");
+                    }
+                }
+                case Op.SUBTRACT, Op.MULTIPLY, Op.DIVIDE -> {
+                    sp--;
+                    if (objects[sp - 1] != null || objects[sp] != null) throw error(chunk, ip, "Operands must be numbers.");
+                    double a = numbers[sp - 1], b = numbers[sp];
+                    numbers[sp - 1] = switch (Op.opcode(instruction)) {
+                        case Op.SUBTRACT -> a - b;
+                        case Op.MULTIPLY -> a * b;
+                        default -> a / b;
+                    };
+                }
+                case Op.NOT -> objects[sp - 1] = isFalsey(objects[sp - 1]);
+                case Op.NEGATE -> {
+                    if (objects[sp - 1] != null) throw error(chunk, ip, "Operand must be a number.");
+                    numbers[sp - 1] = -numbers[sp - 1];
+                }
+                case Op.PRINT -> {
+                    sp--;
+                    out.println(stringify(numbers[sp], objects[sp]));
+                    objects[sp] = null;
+                }
+                case Op.JUMP -> {
+                    int offset = Op.operand(instruction);
+                    // jumping back goes round a loop again: charge for its body
+                    if (offset < 0 && (budget += offset) < 0) throw error(chunk, ip, "Instruction limit exceeded.");
+                    ip += offset;
+                }
+                case Op.JUMP_IF_FALSE -> {
+                    if (isFalsey(objects[sp - 1])) ip += Op.operand(instruction);
+                }
+                case Op.RETURN -> {
+                    return;
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + Op.opcode(instruction));
+            }
+        }
+    }
+
+    /// Only nil and false are falsey. Numbers have a null object, so are always truthy
+    private static boolean isFalsey(Object value) {
+        return value == Nil.NIL || value == Boolean.FALSE;
+    }
+
+    /// Text `print` outputs for a value. Integral numbers are printed without a fractional part
+    static String stringify(double number, Object object) {
+        if (object != null) return object.toString();
+        String text = Double.toString(number);
+        return text.endsWith(".0") ? text.substring(0, text.length() - 2) : text;
+    }
+
+    private RuntimeError undefined(Chunk chunk, int ip, int id) {
+        return error(chunk, ip, "Undefined variable '" + globals.ident(id).name() + "'.");
+    }
+
+    /// Error raised by the instruction before `ip`
+    private static RuntimeError error(Chunk chunk, int ip, String message) {
+        return new RuntimeError(chunk.lines()[ip - 1], message);
+    }
+}
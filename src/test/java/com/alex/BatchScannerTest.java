@@ -0,0 +1,57 @@
+package com.alex;
+
+import com.alex.lox.BatchScanner;
+import com.alex.lox.Scanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchScannerTest {
+    @Test
+    void scan_returnsResultsInInputOrder(@TempDir Path dir) throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            // vary the sizes so that the scans finish out of order
+            files.add(Files.writeString(dir.resolve("script" + i + ".lox"), "print x;\n".repeat((i * 37) % 500) + "@" + i));
+        }
+
+        var results = new BatchScanner(8).scan(files);
+
+        assertEquals(files, results.stream().map(BatchScanner.FileResult::file).toList());
+        for (var result : results) {
+            var expected = new Scanner(Files.readString(result.file())).scanTokens();
+            assertEquals(expected.tokens().size(), result.tokens());
+            assertEquals(expected.errors(), result.errors());
+        }
+    }
+
+    @Test
+    void scan_expandsDirectoriesToSortedSources(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("b"));
+        var second = Files.writeString(dir.resolve("b/main.lox"), "print 1;");
+        var first = Files.writeString(dir.resolve("a.jl"), "print 2;");
+        Files.writeString(dir.resolve("notes.txt"), "@@@");
+
+        var results = new BatchScanner().scan(List.of(dir));
+
+        assertEquals(List.of(first, second), results.stream().map(BatchScanner.FileResult::file).toList());
+        assertFalse(results.stream().anyMatch(BatchScanner.FileResult::hasErrors));
+    }
+
+    @Test
+    void scan_reportsUnreadableFiles(@TempDir Path dir) throws Exception {
+        var results = new BatchScanner().scan(List.of(dir.resolve("missing.lox")));
+
+        assertEquals(1, results.size());
+        assertInstanceOf(NoSuchFileException.class, results.getFirst().failure());
+        assertTrue(results.getFirst().hasErrors());
+    }
+}
@@ -0,0 +1,58 @@
+package com.alex;
+
+import com.alex.lox.IncrementalScanner;
+import com.alex.lox.Scanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalScannerTest {
+    record Edit(String source, int offset, int removed, String inserted) {}
+
+    static final String PROGRAM = "var name = \"John\";\nprint name;\n// comment\nif (x) {\n  print \"multi\nline\";\n}\n";
+
+    static List<Edit> edits() {
+        return List.of(
+                // edits within a single line
+                new Edit(PROGRAM, 4, 4, "surname"),
+                new Edit(PROGRAM, 19, 0, "  "),
+                new Edit(PROGRAM, 0, 0, "@"),
+                // edits adding and removing lines
+                new Edit(PROGRAM, 31, 0, "var y = 2;\n"),
+                new Edit(PROGRAM, 19, 12, ""),
+                // edits inside, opening and closing string literals
+                new Edit(PROGRAM, 65, 0, "er"),
+                new Edit(PROGRAM, 11, 1, ""),
+                new Edit(PROGRAM, 28, 0, "\""),
+                new Edit(PROGRAM, 33, 0, "\"x"),
+                // edits at the very start and end
+                new Edit(PROGRAM, 0, PROGRAM.length(), "("),
+                new Edit(PROGRAM, PROGRAM.length(), 0, "\"unterminated")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("edits")
+    void edit_matchesFullRescan(Edit e) {
+        var scanner = new IncrementalScanner(e.source());
+        var edited = e.source().substring(0, e.offset()) + e.inserted() + e.source().substring(e.offset() + e.removed());
+
+        assertEquals(new Scanner(edited).scanTokens(), scanner.edit(e.offset(), e.removed(), e.inserted()));
+        assertEquals(edited, scanner.source());
+    }
+
+    @Test
+    void edit_sequenceOfKeystrokes_matchesFullRescan() {
+        var scanner = new IncrementalScanner("");
+        var typed = "fun f() {\n  return \"a\nb\" + 1.5;\n}\n";
+
+        for (int i = 0; i < typed.length(); i++) {
+            var result = scanner.edit(i, 0, typed.substring(i, i + 1));
+            assertEquals(new Scanner(typed.substring(0, i + 1)).scanTokens(), result);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.alex;
+
+import com.alex.lox.LineIndex;
+import com.alex.lox.Location;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineIndexTest {
+    private static final LineIndex INDEX = LineIndex.of("ab\n\ncde\nf");
+
+    @ParameterizedTest
+    @CsvSource({"0, 0, 0", "2, 0, 2", "3, 1, 0", "4, 2, 0", "6, 2, 2", "8, 3, 0", "9, 3, 1", "100, 3, 92"})
+    void locate_findsLineAndColumn(int offset, int line, int column) {
+        assertEquals(new Location(line, column), INDEX.locate(offset));
+        assertEquals(line, INDEX.line(offset));
+    }
+
+    @Test
+    void lineStarts() {
+        assertEquals(4, INDEX.lineCount());
+        assertEquals(8, INDEX.lineStart(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> INDEX.lineStart(4));
+        assertThrows(IndexOutOfBoundsException.class, () -> INDEX.line(-1));
+    }
+
+    @Test
+    void of_emptySourceHasOneLine() {
+        var index = LineIndex.of("");
+
+        assertEquals(1, index.lineCount());
+        assertEquals(new Location(0, 0), index.locate(0));
+    }
+}
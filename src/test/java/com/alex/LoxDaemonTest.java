@@ -0,0 +1,117 @@
+package com.alex;
+
+import com.alex.lox.LoxDaemon;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoxDaemonTest {
+    private static LoxDaemon.Reply send(Path socket, String command, String source) throws IOException {
+        return LoxDaemon.send(socket, command, source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void send_repliesWithStatusAndOutput(@TempDir Path dir) throws Exception {
+        Path socket = dir.resolve("lox.sock");
+        try (var daemon = new LoxDaemon(socket)) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    daemon.serve();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            assertEquals(new LoxDaemon.Reply(0, "3\nhé\n"), send(socket, "run", "var a = 1; print a + 2; print \"hé\";"));
+            assertEquals(new LoxDaemon.Reply(70, "Runtime error [0]: Operand must be a number.\n"), send(socket, "run", "print -nil;"));
+            assertEquals(new LoxDaemon.Reply(65, "print·EOF\nScan error [0:7]: Unexpected character: @\n"),
+                    send(socket, "tokens", "print @"));
+            assertEquals(new LoxDaemon.Reply(0, "T\t0\t0\tIDENT\tx\nT\t0\t1\tEOF\t\n"), send(socket, "tokens=tsv", "x"));
+            assertEquals(64, send(socket, "compile", "x").status());
+            assertEquals(new LoxDaemon.Reply(0, ""), send(socket, "run", ""));
+        }
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    void send_servesClientsConcurrently(@TempDir Path dir) throws Exception {
+        Path socket = dir.resolve("lox.sock");
+        try (var daemon = new LoxDaemon(socket); var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    daemon.serve();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            List<Future<LoxDaemon.Reply>> replies = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String source = "var x = " + i + "; print x * 2;";
+                replies.add(clients.submit(() -> send(socket, "run", source)));
+            }
+            for (int i = 0; i < replies.size(); i++) {
+                assertEquals(new LoxDaemon.Reply(0, i * 2 + "\n"), replies.get(i).get());
+            }
+        }
+    }
+
+    @Test
+    void send_servesClientsPastConcurrentRequestLimit(@TempDir Path dir) throws Exception {
+        Path socket = dir.resolve("lox.sock");
+        try (var daemon = new LoxDaemon(socket, 1); var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    daemon.serve();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            List<Future<LoxDaemon.Reply>> replies = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                String source = "var i = 0; while (i < 1000) i = i + 1; print i + " + i + ";";
+                replies.add(clients.submit(() -> send(socket, "run", source)));
+            }
+            for (int i = 0; i < replies.size(); i++) {
+                assertEquals(new LoxDaemon.Reply(0, 1000 + i + "\n"), replies.get(i).get());
+            }
+        }
+    }
+
+    @Test
+    void send_stopsOutputPastLimit(@TempDir Path dir) throws Exception {
+        Path socket = dir.resolve("lox.sock");
+        try (var daemon = new LoxDaemon(socket)) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    daemon.serve();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            var reply = send(socket, "run", "while (true) print \"" + "x".repeat(999) + "\";");
+            assertEquals(70, reply.status());
+            assertTrue(reply.output().endsWith("\nOutput larger than " + LoxDaemon.MAX_OUTPUT_SIZE + " bytes, stopped\n"));
+        }
+    }
+
+    @Test
+    void new_refusesSocketInUse(@TempDir Path dir) throws Exception {
+        Path socket = dir.resolve("lox.sock");
+        try (var ignored = new LoxDaemon(socket)) {
+            assertThrows(IOException.class, () -> new LoxDaemon(socket));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.alex;
+
+import com.alex.lox.Location;
+import com.alex.lox.PackedTokens;
+import com.alex.lox.Scanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static com.alex.lox.TokenType.Symbol.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedTokensTest {
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "var name = \"John\"\nprint name",
+            "  if (true) {\n    print \"yes\"\n  }",
+            "x = 42.5 // comment\n!= foo123",
+            "@ \"unterminated"
+    })
+    void scanPacked_materialisesSameResultAsScanTokens(String source) {
+        var expected = new Scanner(source).scanTokens();
+        var packed = new Scanner(source).scanPacked();
+
+        assertEquals(expected, packed.toScanResult());
+    }
+
+    @Test
+    void scanPacked_exposesLexemeViews() {
+        var packed = new Scanner("print \"hello\" + 12;").scanPacked();
+
+        assertEquals(6, packed.size());
+        assertTrue(packed.is(0, PRINT));
+        assertEquals(PackedTokens.STRING, packed.kind(1));
+        assertEquals("\"hello\"", packed.lexeme(1).toString());
+        assertEquals("hello", packed.stringValue(1).toString());
+        assertEquals(PackedTokens.NUMBER, packed.kind(3));
+        assertEquals("12", packed.lexeme(3).toString());
+        assertTrue(packed.is(5, EOF));
+    }
+
+    @Test
+    void scanOffsets_resolvesLocationsOfTokenStarts() {
+        var packed = new Scanner("var s = \"multi\nline\";\n  @ x").scanOffsets();
+
+        assertEquals(new Location(0, 8), packed.location(3));
+        assertEquals(new Location(1, 5), packed.location(4));
+        assertEquals(new Location(2, 4), packed.location(5));
+        assertEquals(3, packed.lineIndex().lineCount());
+        assertEquals(List.of(new Scanner.ScanError(new Location(2, 2), "Unexpected character: @")), packed.errors());
+    }
+
+    @Test
+    void scanOffsets_locatesUnterminatedStringAtOpeningQuote() {
+        var packed = new Scanner("x\n  \"open\nstill open").scanOffsets();
+
+        assertEquals(List.of(new Scanner.ScanError(new Location(1, 2), "Unterminated string literal")), packed.errors());
+    }
+}
@@ -0,0 +1,70 @@
+package com.alex;
+
+import com.alex.lox.ParallelScanner;
+import com.alex.lox.Scanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelScannerTest {
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "var name = \"John\"\nprint name\n",
+            "  if (true) {\n    print \"yes\"\n  }\n  // done\n",
+            // string literals spanning several chunks
+            "print \"a\nb\nc\nd\" + 1;\nprint \"e\nf\";\nx\n",
+            "\"one\n\" \"two\nthree\n\"\n(\n",
+            // quotes inside comments must not be mistaken for strings
+            "// \"not a string\n(\n// still \"not\n)\n",
+            "@\n#\n\"unterminated\nstring"
+    })
+    void scanTokens_matchesSequentialScan_withTinyChunks(String source) {
+        var expected = new Scanner(source).scanTokens();
+
+        for (int chunkSize = 1; chunkSize < 8; chunkSize++) {
+            var parallel = new ParallelScanner(ForkJoinPool.commonPool(), chunkSize);
+            assertEquals(expected, parallel.scanTokens(source), "chunk size " + chunkSize);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 4, 10})
+    void withMaxErrors_matchesSequentialScan(int maxErrors) {
+        var source = "x @\ny #\n\"open\n$ z\n\" ~\nw @ @\n".repeat(3);
+        var expected = new Scanner(source).withMaxErrors(maxErrors).scanTokens();
+
+        for (int chunkSize = 1; chunkSize < 8; chunkSize++) {
+            var parallel = new ParallelScanner(ForkJoinPool.commonPool(), chunkSize).withMaxErrors(maxErrors);
+            assertEquals(expected, parallel.scanTokens(source), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    void scanTokens_stringSpanningManyChunks_isNoSlowerThanSequentialScan() {
+        var source = "var s = \"" + "a line of text inside one long string literal\n".repeat(20_000) + "\";\nprint s;\n";
+        var parallel = new ParallelScanner(ForkJoinPool.commonPool(), 1 << 10);
+        assertEquals(new Scanner(source).scanTokens(), parallel.scanTokens(source));
+
+        long sequential = fastest(() -> new Scanner(source).scanTokens());
+        // allowing for what scanning in parallel costs whatever the source: counting lines, running the chunks' tasks
+        long allowance = Duration.ofMillis(100).toNanos();
+        assertTrue(fastest(() -> parallel.scanTokens(source)) < sequential + allowance);
+    }
+
+    /// Shortest time in nanoseconds that a few runs of the scan take
+    private static long fastest(Runnable scan) {
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            scan.run();
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return fastest;
+    }
+}
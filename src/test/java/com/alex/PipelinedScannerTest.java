@@ -0,0 +1,76 @@
+package com.alex;
+
+import com.alex.lox.PipelinedScanner;
+import com.alex.lox.Scanner;
+import com.alex.lox.StreamingScanner;
+import com.alex.lox.Token;
+import com.alex.lox.TokenStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.alex.lox.TokenType.Symbol.EOF;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelinedScannerTest {
+    private static final String SOURCE = """
+            var name = "John";
+            // a comment
+            while (n < 10) { print name + n; n = n + 1.5; }
+            @ "unterminated
+            """.repeat(50);
+
+    @ParameterizedTest
+    @CsvSource({"1, 1", "3, 2", "64, 4", "1024, 16"})
+    void nextToken_matchesScanner(int batchSize, int capacity) {
+        var expected = new Scanner(SOURCE).scanTokens();
+
+        try (var scanner = new PipelinedScanner(() -> new StreamingScanner(new StringReader(SOURCE)), batchSize, capacity)) {
+            List<Token> tokens = new ArrayList<>();
+            Token token;
+            do {
+                token = scanner.nextToken();
+                tokens.add(token);
+            } while (token.type() != EOF);
+
+            assertEquals(expected.tokens(), tokens);
+            assertEquals(expected.errors(), scanner.errors());
+            assertEquals(token, scanner.nextToken());
+        }
+    }
+
+    @Test
+    void nextToken_rethrowsFailureToOpen() {
+        try (var scanner = new PipelinedScanner(() -> { throw new IOException("no such file"); })) {
+            var e = assertThrows(UncheckedIOException.class, scanner::nextToken);
+            assertEquals("no such file", e.getCause().getMessage());
+            assertThrows(UncheckedIOException.class, scanner::nextToken);
+        }
+    }
+
+    @Test
+    void nextToken_rethrowsErrorOfScanner() {
+        TokenStream failing = new TokenStream() {
+            @Override
+            public Token nextToken() {
+                throw new StackOverflowError();
+            }
+
+            @Override
+            public List<Scanner.ScanError> errors() {
+                return List.of();
+            }
+        };
+
+        try (var scanner = new PipelinedScanner(() -> failing)) {
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(StackOverflowError.class, scanner::nextToken));
+        }
+    }
+}
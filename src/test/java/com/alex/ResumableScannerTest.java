@@ -0,0 +1,107 @@
+package com.alex;
+
+import com.alex.lox.Location;
+import com.alex.lox.ResumableScanner;
+import com.alex.lox.ResumableScanner.Continuation;
+import com.alex.lox.Scanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResumableScannerTest {
+    static final String PROGRAM = "var name = \"John\";\nprint name >= 1.5; // comment\nif (x) {\n  print \"multi\nline\";\n}\n\"open";
+
+    static List<Integer> chunkSizes() {
+        return List.of(1, 2, 3, 7, PROGRAM.length());
+    }
+
+    @ParameterizedTest
+    @MethodSource("chunkSizes")
+    void finish_matchesScanOfWholeInput(int chunkSize) {
+        var scanner = new ResumableScanner();
+        for (int i = 0; i < PROGRAM.length(); i += chunkSize) {
+            scanner.feed(PROGRAM.substring(i, Math.min(PROGRAM.length(), i + chunkSize)));
+        }
+
+        assertEquals(new Scanner(PROGRAM).scanTokens(), scanner.finish());
+    }
+
+    @Test
+    void feed_suspendsInStringLiteral() {
+        var scanner = new ResumableScanner();
+
+        assertEquals(1, scanner.feed("print \"one\n").size());
+        assertEquals(Continuation.STRING, scanner.continuation());
+        assertEquals(new Location(0, 6), scanner.location());
+        assertEquals(List.of(), scanner.feed("two\n"));
+
+        assertEquals(2, scanner.feed("three\";\n").size());
+        assertEquals(Continuation.NONE, scanner.continuation());
+        assertTrue(scanner.finish().errors().isEmpty());
+        assertTrue(scanner.isEmpty());
+    }
+
+    @Test
+    void feed_holdsBackTokensTheNextChunkMayExtend() {
+        var scanner = new ResumableScanner();
+
+        assertEquals(1, scanner.feed("x an").size());
+        assertEquals(Continuation.TOKEN, scanner.continuation());
+        assertEquals(1, scanner.feed("swer 1.").size());
+        assertEquals(Continuation.TOKEN, scanner.continuation());
+        scanner.feed("5 //");
+        assertEquals(Continuation.COMMENT, scanner.continuation());
+        scanner.feed(" still a comment {");
+
+        assertEquals(new Scanner("x answer 1.5 // still a comment {").scanTokens(), scanner.finish());
+    }
+
+    @Test
+    void feed_stringOpenAtMaxErrors_isNotAnError() {
+        var scanner = new ResumableScanner().withMaxErrors(2);
+
+        scanner.feed("@ # \"open\n");
+        assertEquals(Continuation.STRING, scanner.continuation());
+        scanner.feed("string\" x\n");
+
+        var input = "@ # \"open\nstring\" x\n";
+        var result = scanner.finish();
+        assertEquals(new Scanner(input).withMaxErrors(2).scanTokens(), result);
+        assertEquals(2, result.errors().size());
+    }
+
+    @Test
+    void feed_pastMaxErrors_stopsScan() {
+        var scanner = new ResumableScanner().withMaxErrors(2);
+        var chunks = List.of("x\n", "@ y # $ z\n", "\"open\n", "// \"\n", "w\n");
+
+        scanner.feed(chunks.get(0));
+        assertFalse(scanner.isStopped());
+        scanner.feed(chunks.get(1));
+        assertTrue(scanner.isStopped());
+        assertEquals(Continuation.NONE, scanner.continuation());
+        for (var chunk : chunks.subList(2, chunks.size())) {
+            assertEquals(List.of(), scanner.feed(chunk));
+            assertEquals(Continuation.NONE, scanner.continuation());
+        }
+
+        var result = scanner.finish();
+        assertEquals(new Scanner(String.join("", chunks)).withMaxErrors(2).scanTokens(), result);
+        assertEquals(3, result.errors().size());
+        assertFalse(scanner.isStopped());
+    }
+
+    @Test
+    void openBrackets_countsUnclosedBrackets() {
+        var scanner = new ResumableScanner();
+
+        scanner.feed("if (x) {\n");
+        assertEquals(1, scanner.openBrackets());
+        scanner.feed("print f(1, (2));\n}\n");
+        assertEquals(0, scanner.openBrackets());
+    }
+}
@@ -0,0 +1,83 @@
+package com.alex;
+
+import com.alex.lox.PackedTokens;
+import com.alex.lox.ScanMetrics;
+import com.alex.lox.Scanner;
+import com.alex.lox.StreamingScanner;
+import com.alex.lox.Utf8Scanner;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.alex.lox.TokenType.Symbol.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanMetricsTest {
+    @Test
+    void record_countsScansTokensAndErrors() {
+        var metrics = new ScanMetrics();
+        new Scanner("var x = 1; @ \"s\"").withMetrics(metrics).scanTokens();
+        new Scanner("print x;").withMetrics(metrics).scanPacked();
+
+        assertEquals(2, metrics.scans());
+        assertEquals(24, metrics.chars());
+        assertEquals(1, metrics.errors());
+        assertEquals(11, metrics.tokens());
+        assertEquals(2, metrics.tokens(PackedTokens.IDENT));
+        assertEquals(1, metrics.tokens(PackedTokens.STRING));
+        assertEquals(1, metrics.tokens(PackedTokens.NUMBER));
+        assertEquals(2, metrics.tokens(SEMICOLON));
+        assertEquals(2, metrics.tokens(EOF));
+        assertEquals(2, Arrays.stream(metrics.durationHistogram()).sum());
+        assertTrue(metrics.durationPercentile(1) > 0);
+    }
+
+    @Test
+    void record_countsTokenAtATimeScansLikeScanner() {
+        var source = "var x = 1; @ \"s\"";
+        var expected = new ScanMetrics();
+        new Scanner(source).withMetrics(expected).scanTokens();
+
+        var utf8 = new ScanMetrics();
+        new Utf8Scanner(MemorySegment.ofArray(source.getBytes(StandardCharsets.UTF_8))).withMetrics(utf8).scanTokens();
+        var streaming = new ScanMetrics();
+        var scanner = new StreamingScanner(new StringReader(source)).withMetrics(streaming);
+        while (scanner.hasNext()) scanner.next();
+
+        for (var metrics : List.of(utf8, streaming)) {
+            assertEquals(1, metrics.scans());
+            assertEquals(expected.chars(), metrics.chars());
+            assertEquals(expected.errors(), metrics.errors());
+            for (int kind = 0; kind < ScanMetrics.KINDS; kind++) assertEquals(expected.tokens(kind), metrics.tokens(kind));
+        }
+    }
+
+    @Test
+    void scan_withoutMetricsAttached_recordsScanEvent(@TempDir Path dir) throws IOException {
+        var file = dir.resolve("scan.jfr");
+        try (var recording = new Recording()) {
+            recording.enable("com.alex.lox.Scan");
+            recording.start();
+            new Scanner("print x;").scanTokens();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        var events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("com.alex.lox.Scan"))
+                .toList();
+        assertEquals(1, events.size());
+        assertEquals(8, events.getFirst().getLong("chars"));
+        assertEquals(4, events.getFirst().getInt("tokens"));
+        assertFalse(events.getFirst().getBoolean("packed"));
+    }
+}
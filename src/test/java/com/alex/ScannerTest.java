@@ -40,6 +40,65 @@ class ScannerTest {
         assertEquals(1, result.errors().size());
     }
 
+    @Test
+    void scanTokens_unexpectedCharacterRun_singleError() {
+        var result = new Scanner("x @#~ y " + "\0".repeat(101)).scanTokens();
+
+        assertEquals(List.of(
+                new Scanner.ScanError(new Location(0, 3), "Unexpected characters: @#~", 3),
+                new Scanner.ScanError(new Location(0, 9), "Unexpected characters: " + "\0".repeat(16) + "... (101 in total)", 101)
+        ), result.errors());
+        assertEquals(3, result.tokens().size());
+    }
+
+    @Test
+    void withMaxErrors_abortsScan() {
+        var result = new Scanner("a @ b @ c @ d").withMaxErrors(2).scanTokens();
+
+        assertEquals(3, result.errors().size());
+        assertEquals(new Scanner.ScanError(new Location(0, 11), "Too many errors, scanning stopped after 2"), result.errors().get(2));
+        assertEquals(tlb().t(new TokenType.Ident("a"), 0, 0).t(new TokenType.Ident("b"), 0, 4).t(new TokenType.Ident("c"), 0, 8)
+                .t(EOF, 0, 11).b(), result.tokens());
+    }
+
+    @Test
+    void reset_scansNewSourceFromTheStart() {
+        var scanner = new Scanner("\"unterminated\n@");
+        scanner.scanTokens();
+
+        var result = scanner.reset("x\ny").scanTokens();
+
+        assertEquals(tlb().t(new TokenType.Ident("x"), 0, 0).t(new TokenType.Ident("y"), 1, 0).t(EOF, 1, 1).b(), result.tokens());
+        assertTrue(result.errors().isEmpty());
+        assertSame(result.tokens().get(0).type(), scanner.reset("x").scanTokens().tokens().get(0).type());
+    }
+
+    @Test
+    void reset_reusesPackedStorage() {
+        var scanner = new Scanner("var a = 1;");
+        var first = scanner.scanOffsets();
+
+        var second = scanner.reset("print\nb;").scanOffsets();
+
+        assertSame(first, second);
+        assertEquals(4, second.size());
+        assertEquals(new Location(1, 0), second.location(1));
+        assertEquals("b", second.lexeme(1).toString());
+    }
+
+    @Test
+    void local_isResetPerCall() {
+        assertEquals(3, Scanner.local("a b").scanTokens().tokens().size());
+        assertEquals(2, Scanner.local("c").scanTokens().tokens().size());
+    }
+
+    @Test
+    void local_doesNotKeepMaxErrors() {
+        Scanner.local("@").withMaxErrors(1).scanTokens();
+
+        assertEquals(3, Scanner.local("@ # $").scanTokens().errors().size());
+    }
+
     // Tests generated by Copilot :)
     static List<Case<String, TokenType>> simpleScanTests() {
         var l = LEFT_PAREN;
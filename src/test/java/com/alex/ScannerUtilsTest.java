@@ -0,0 +1,24 @@
+package com.alex;
+
+import com.alex.lox.ScannerUtils;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScannerUtilsTest {
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "0", "7", "123", "123.45", "0.1", "0.3", "000123.000", "3.141592653589793",
+            "9007199254740992", "9007199254740993", "12345678901234567890123",
+            "0.1234567890123456789012345", "1.7976931348623157", "4.9406564584124654"
+    })
+    void parseNumber_isBitIdenticalToParseDouble(String literal) {
+        var source = "x = " + literal + ";";
+        int start = 4;
+
+        double parsed = ScannerUtils.parseNumber(source, start, start + literal.length());
+
+        assertEquals(Double.doubleToRawLongBits(Double.parseDouble(literal)), Double.doubleToRawLongBits(parsed));
+    }
+}
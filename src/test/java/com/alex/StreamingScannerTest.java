@@ -0,0 +1,63 @@
+package com.alex;
+
+import com.alex.lox.Scanner;
+import com.alex.lox.StreamingScanner;
+import com.alex.lox.Token;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.alex.lox.TokenType.Symbol.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingScannerTest {
+    static List<String> sources() {
+        return List.of(
+                "",
+                "(){}",
+                "var name = \"John\"\nprint name",
+                "  if (true) {\n    print \"yes\"\n  }",
+                "// a comment which is much longer than the scanner buffer\n(",
+                "\"a string literal which is much longer than the scanner buffer\nspanning lines\" x",
+                "123.45 + 6 * foo123 != bar",
+                "@ # \"unterminated"
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("sources")
+    void nextToken_matchesScanTokens_withTinyBuffer(String source) {
+        var expected = new Scanner(source).scanTokens();
+        var scanner = new StreamingScanner(new StringReader(source), 4);
+
+        List<Token> tokens = new ArrayList<>();
+        scanner.forEachRemaining(tokens::add);
+
+        assertEquals(expected.tokens(), tokens);
+        assertEquals(expected.errors(), scanner.errors());
+    }
+
+    @Test
+    void nextToken_afterEof_keepsReturningEof() {
+        var scanner = new StreamingScanner(new StringReader("("));
+
+        assertEquals(LEFT_PAREN, scanner.nextToken().type());
+        assertEquals(EOF, scanner.nextToken().type());
+        assertFalse(scanner.hasNext());
+        assertEquals(EOF, scanner.nextToken().type());
+    }
+
+    @Test
+    void nextToken_internsIdentifiers() {
+        var scanner = new StreamingScanner(new StringReader("name + name"), 4);
+
+        var first = scanner.nextToken().type();
+        scanner.nextToken();
+
+        assertSame(first, scanner.nextToken().type());
+    }
+}
@@ -0,0 +1,70 @@
+package com.alex;
+
+import com.alex.lox.Scanner;
+import com.alex.lox.SymbolTable;
+import com.alex.lox.TokenType;
+import com.alex.lox.Utf8Scanner;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolTableTest {
+    @Test
+    void intern_sameNameFromDifferentRanges_returnsSameInstanceAndId() {
+        var symbols = new SymbolTable();
+        var source = "foo bar foo";
+
+        var first = symbols.intern(source, 0, 3);
+        var second = symbols.intern(source, 8, 11);
+
+        assertSame(first, second);
+        assertEquals(0, symbols.id(source, 8, 11));
+        assertEquals(1, symbols.id(source, 4, 7));
+        assertEquals(2, symbols.size());
+        assertEquals(new TokenType.Ident("bar"), symbols.ident(1));
+    }
+
+    @Test
+    void intern_manyNames_keepsIdsStableAcrossGrowth() {
+        var symbols = new SymbolTable();
+        var source = new StringBuilder();
+        for (int i = 0; i < 1000; i++) source.append("name").append(i).append(' ');
+        var s = source.toString();
+
+        int start = 0;
+        for (int i = 0; i < 1000; i++) {
+            int end = s.indexOf(' ', start);
+            assertEquals(i, symbols.id(s, start, end));
+            assertEquals("name" + i, symbols.intern(s, start, end).name());
+            start = end + 1;
+        }
+        assertEquals(1000, symbols.size());
+        assertEquals("name999", symbols.ident(999).name());
+    }
+
+    @Test
+    void scanTokens_repeatedIdentifiers_shareInternedIdent() {
+        var tokens = new Scanner("x = x + y; fortune fun").scanTokens().tokens();
+
+        assertSame(tokens.get(0).type(), tokens.get(2).type());
+        assertEquals(new TokenType.Ident("fortune"), tokens.get(6).type());
+        assertEquals(TokenType.Symbol.FUN, tokens.get(7).type());
+    }
+
+    @Test
+    void scanTokens_utf8Source_repeatedIdentifiersShareInternedIdent() {
+        var source = new StringBuilder("x = x + y; fortune fun");
+        for (int i = 0; i < 1000; i++) source.append(" name").append(i).append(" x");
+        var bytes = source.toString().getBytes(StandardCharsets.UTF_8);
+
+        var tokens = new Utf8Scanner(MemorySegment.ofArray(bytes)).scanTokens().tokens();
+
+        assertEquals(new Scanner(source.toString()).scanTokens().tokens(), tokens);
+        assertSame(tokens.get(0).type(), tokens.get(2).type());
+        // the last x, past the growth of the table
+        assertSame(tokens.get(0).type(), tokens.get(tokens.size() - 2).type());
+    }
+}
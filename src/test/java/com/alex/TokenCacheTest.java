@@ -0,0 +1,88 @@
+package com.alex;
+
+import com.alex.lox.Scanner;
+import com.alex.lox.TokenCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenCacheTest {
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "var name = \"John\"\nprint name",
+            "fun f(a, b) { return a + b * 12.5; } f(f, f)",
+            "\"héllo\nwörld\" 😀 @ 0.1 \"unterminated"
+    })
+    void scan_hitReturnsSameResultAsMiss(String source, @TempDir Path dir) throws IOException {
+        var file = Files.writeString(dir.resolve("script.lox"), source, StandardCharsets.UTF_8);
+        var cache = new TokenCache(dir.resolve("cache"));
+        var expected = new Scanner(source).scanTokens();
+
+        assertEquals(expected, cache.scan(file));
+        assertEquals(1, entries(dir.resolve("cache")));
+        assertEquals(expected, cache.scan(file));
+    }
+
+    @Test
+    void scan_changedSourceIsRescanned(@TempDir Path dir) throws IOException {
+        var file = Files.writeString(dir.resolve("script.lox"), "print a;");
+        var cache = new TokenCache(dir.resolve("cache"));
+        cache.scan(file);
+
+        Files.writeString(file, "print b;");
+        assertEquals(new Scanner("print b;").scanTokens(), cache.scan(file));
+        assertEquals(2, entries(dir.resolve("cache")));
+    }
+
+    @Test
+    void scan_entriesAreKeptPerMaxErrors(@TempDir Path dir) throws IOException {
+        var source = "@ # $ ~";
+        var file = Files.writeString(dir.resolve("script.lox"), source);
+
+        assertEquals(4, new TokenCache(dir.resolve("cache")).scan(file).errors().size());
+        var limited = new TokenCache(dir.resolve("cache"), 2).scan(file);
+        assertEquals(new Scanner(source).withMaxErrors(2).scanTokens(), limited);
+        assertEquals(2, entries(dir.resolve("cache")));
+    }
+
+    @Test
+    void scan_corruptEntryIsRescanned(@TempDir Path dir) throws IOException {
+        var file = Files.writeString(dir.resolve("script.lox"), "print \"cached\";");
+        var cache = new TokenCache(dir.resolve("cache"));
+        cache.scan(file);
+
+        try (Stream<Path> entries = Files.list(dir.resolve("cache"))) {
+            Path entry = entries.findFirst().orElseThrow();
+            byte[] bytes = Files.readAllBytes(entry);
+            bytes[bytes.length / 2] ^= 1;
+            Files.write(entry, bytes);
+        }
+
+        assertEquals(new Scanner("print \"cached\";").scanTokens(), cache.scan(file));
+    }
+
+    @Test
+    void scan_unwritableCacheReturnsScanResult(@TempDir Path dir) throws IOException {
+        var file = Files.writeString(dir.resolve("script.lox"), "print a;");
+        // a file where the cache directory should be, so that no entry can be written
+        var cache = new TokenCache(Files.writeString(dir.resolve("cache"), ""));
+
+        assertEquals(new Scanner("print a;").scanTokens(), cache.scan(file));
+    }
+
+    private static long entries(Path cache) throws IOException {
+        try (Stream<Path> entries = Files.list(cache)) {
+            return entries.count();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.alex;
+
+import com.alex.lox.Scanner;
+import com.alex.lox.TokenStream;
+import com.alex.lox.TokenWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenWriterTest {
+    private static String dump(String source, TokenWriter.Format format) throws IOException {
+        var out = new ByteArrayOutputStream();
+        new TokenWriter(Channels.newChannel(out), format).dump(TokenStream.of(new Scanner(source).scanTokens()));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void dump_human() throws IOException {
+        assertEquals("print·x·+·1.5·;·EOF\nScan error [0:16]: Unexpected character: @\n",
+                dump("print x + 1.5; @", TokenWriter.Format.HUMAN));
+    }
+
+    @Test
+    void dump_tsvEscapesValues() throws IOException {
+        assertEquals("""
+                T\t0\t0\tVAR\t
+                T\t0\t4\tIDENT\tx
+                T\t0\t6\tEQUAL\t
+                T\t0\t8\tSTRING\ta\\\\b\\tc
+                T\t0\t15\tSEMICOLON\t
+                T\t0\t16\tEOF\t
+                """, dump("var x = \"a\\b\tc\";", TokenWriter.Format.TSV));
+    }
+
+    @Test
+    void dump_outputLargerThanBuffers() throws IOException {
+        String source = "\"😀é\" ".repeat(50_000);
+
+        String out = dump(source, TokenWriter.Format.HUMAN);
+
+        assertEquals("😀é·".repeat(50_000) + "EOF\n", out);
+    }
+}
@@ -0,0 +1,114 @@
+package com.alex;
+
+import com.alex.lox.Location;
+import com.alex.lox.Scanner;
+import com.alex.lox.SegmentTokens;
+import com.alex.lox.Token;
+import com.alex.lox.TokenType;
+import com.alex.lox.Utf8Scanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class Utf8ScannerTest {
+    static List<String> sources() {
+        return List.of(
+                "",
+                "var name = \"John\"\nprint name",
+                "  if (true) {\n    print \"yes\"\n  }",
+                "// commentaire écrit en français\n(",
+                "\"héllo wörld\" + 12.5 * _x1",
+                "\"emoji 😀 inside\" x",
+                "é ( 😀 )",
+                "@ # \"unterminated ü"
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("sources")
+    void scanTokens_matchesScannerOnDecodedSource(String source) {
+        var expected = new Scanner(source).scanTokens();
+        var scanner = new Utf8Scanner(MemorySegment.ofArray(source.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(expected, scanner.scanTokens());
+    }
+
+    @ParameterizedTest
+    @MethodSource("sources")
+    void scanTokens_vectorized_matchesScalar(String source) {
+        // long runs so that whitespace, comments and strings span several vectors
+        var padded = "        \t\t        " + source + "\n// " + "comment ü ".repeat(20) + "\n\"" + "line\n".repeat(40) + "\"";
+        var segment = MemorySegment.ofArray(padded.getBytes(StandardCharsets.UTF_8));
+
+        var vectorized = new Utf8Scanner(segment, true);
+        assumeTrue(vectorized.isVectorized(), "Vector API not compiled in, build with -Pvector");
+        assertEquals(new Utf8Scanner(segment).scanTokens(), vectorized.scanTokens());
+    }
+
+    @Test
+    void open_scansMappedFile(@TempDir Path dir) throws IOException {
+        var source = "print \"ünïcode\";\n";
+        var file = Files.writeString(dir.resolve("script.lox"), source, StandardCharsets.UTF_8);
+
+        try (var scanner = Utf8Scanner.open(file)) {
+            assertEquals(new Scanner(source).scanTokens(), scanner.scanTokens());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("sources")
+    void scanPacked_matchesScanTokens(String source) {
+        var segment = MemorySegment.ofArray(source.getBytes(StandardCharsets.UTF_8));
+        var expected = new Utf8Scanner(segment).scanTokens();
+
+        try (var arena = Arena.ofConfined()) {
+            var tokens = new Utf8Scanner(segment).scanPacked(arena);
+
+            assertEquals(expected.tokens().size(), tokens.size());
+            for (int i = 0; i < tokens.size(); i++) assertEquals(expected.tokens().get(i), tokens.token(i));
+            assertEquals(expected.errors(), tokens.errors());
+        }
+    }
+
+    @Test
+    void scanPacked_storesTokensInArena() {
+        var source = "var x = \"é\";\n".repeat(20_000);
+        var segment = MemorySegment.ofArray(source.getBytes(StandardCharsets.UTF_8));
+        SegmentTokens tokens;
+
+        try (var arena = Arena.ofConfined()) {
+            tokens = new Utf8Scanner(segment).scanPacked(arena);
+
+            assertEquals(100_001, tokens.size());
+            assertTrue(tokens.is(100_000, TokenType.Symbol.EOF));
+            assertEquals(new Token(new TokenType.StrLit("é"), new Location(19_999, 8)), tokens.token(99_998));
+            assertEquals("\"é\"", new String(tokens.lexeme(99_998).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8));
+        }
+        assertThrows(IllegalStateException.class, () -> tokens.kind(0));
+    }
+
+    @Test
+    void scanPacked_laterScansLeaveTokensAlone() {
+        var scanner = new Utf8Scanner(MemorySegment.ofArray("print x;".getBytes(StandardCharsets.UTF_8)));
+
+        try (var arena = Arena.ofConfined()) {
+            var tokens = scanner.scanPacked(arena);
+
+            assertEquals(List.of(new Token(TokenType.Symbol.EOF, new Location(0, 8))), scanner.scanTokens().tokens());
+            assertEquals(4, tokens.size());
+        }
+    }
+}
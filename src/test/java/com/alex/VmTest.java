@@ -0,0 +1,105 @@
+package com.alex;
+
+import com.alex.lox.Compiler;
+import com.alex.lox.Scanner;
+import com.alex.lox.TokenStream;
+import com.alex.lox.Vm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VmTest {
+    record Case(String source, String expected) {}
+
+    static List<Case> programs() {
+        return List.of(
+                new Case("print 1 + 2 * 3 - 4 / 2;", "5"),
+                new Case("print (1 + 2) * 3; print -2.5; print 10 / 4;", "9\n-2.5\n2.5"),
+                new Case("print \"con\" + \"cat\";", "concat"),
+                new Case("print 1 < 2; print 2 <= 1; print 3 > 3; print 3 >= 3;", "true\nfalse\nfalse\ntrue"),
+                new Case("print 1 == 1; print \"a\" != \"a\"; print nil == false; print !nil;", "true\nfalse\nfalse\ntrue"),
+                new Case("var nan = 0 / 0; print nan == nan; print nan != nan; print nan < 1; print nan >= 1;", "false\ntrue\nfalse\nfalse"),
+                new Case("print nil or \"default\"; print false and missing; print 1 and 2;", "default\nfalse\n2"),
+                new Case("var a = 1; a = a + 1; print a; var b; print b;", "2\nnil"),
+                new Case("var a = \"global\"; { var a = \"outer\"; { var a = \"inner\"; print a; } print a; } print a;", "inner\nouter\nglobal"),
+                new Case("var a; var b; a = b = 3; print a + b;", "6"),
+                new Case("if (1 > 2) print \"then\"; else print \"else\"; if (true) print \"only\";", "else\nonly"),
+                new Case("var i = 0; while (i < 3) { print i; i = i + 1; }", "0\n1\n2"),
+                new Case("for (var i = 0; i < 3; i = i + 1) { var square = i * i; print square; }", "0\n1\n4"),
+                new Case("var n = 0; for (; n < 2;) n = n + 1; print n;", "2")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("programs")
+    void execute_printsResults(Case tc) {
+        assertEquals(tc.expected() + "\n", run(tc.source()));
+    }
+
+    @Test
+    void execute_globalsPersistAcrossRuns() {
+        var out = new ByteArrayOutputStream();
+        var vm = new Vm(new PrintStream(out, true, StandardCharsets.UTF_8));
+        execute(vm, "var count = 1;");
+        execute(vm, "count = count + 1; print count;");
+
+        assertEquals("2\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void execute_runtimeErrors() {
+        var e = assertThrows(Vm.RuntimeError.class, () -> execute(new Vm(new PrintStream(OutputStream.nullOutputStream())), "print 1;\nprint \"a\" - 1;"));
+        assertEquals("Operands must be numbers.", e.getMessage());
+        assertEquals(1, e.line());
+
+        e = assertThrows(Vm.RuntimeError.class, () -> execute(new Vm(new PrintStream(OutputStream.nullOutputStream())), "print undefined;"));
+        assertEquals("Undefined variable 'undefined'.", e.getMessage());
+    }
+
+    @Test
+    void execute_stopsEndlessLoopAtInstructionLimit() {
+        var vm = new Vm(new PrintStream(OutputStream.nullOutputStream())).withInstructionLimit(1000);
+        execute(vm, "for (var i = 0; i < 10; i = i + 1) print i;");
+
+        var e = assertThrows(Vm.RuntimeError.class, () -> execute(vm, "var n = 0;\nwhile (true) n = n + 1;"));
+        assertEquals("Instruction limit exceeded.", e.getMessage());
+        assertEquals(1, e.line());
+    }
+
+    @Test
+    void compile_reportsErrors() {
+        var result = compile(new Vm(new PrintStream(OutputStream.nullOutputStream())), "print 1 +;\nvar 1 = 2;\n{ var a = a; }\n1 = 2;\nfun f() {}");
+
+        assertEquals(List.of(
+                "Expect expression.",
+                "Expect variable name.",
+                "Can't read local variable in its own initializer.",
+                "Invalid assignment target.",
+                "Functions are not supported yet."
+        ), result.errors().stream().map(Compiler.CompileError::message).toList());
+    }
+
+    private static String run(String source) {
+        var out = new ByteArrayOutputStream();
+        execute(new Vm(new PrintStream(out, true, StandardCharsets.UTF_8)), source);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void execute(Vm vm, String source) {
+        var result = compile(vm, source);
+        assertEquals(List.of(), result.errors());
+        vm.execute(result.chunk());
+    }
+
+    private static Compiler.Result compile(Vm vm, String source) {
+        return Compiler.compile(TokenStream.of(new Scanner(source).scanTokens()), vm.globals());
+    }
+}
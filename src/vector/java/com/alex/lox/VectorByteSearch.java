@@ -0,0 +1,86 @@
+package com.alex.lox;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteOrder;
+
+/// [ByteSearch] comparing a whole vector of bytes per instruction with the incubating Vector API. Only compiled by the
+/// `vector` build profile, and only loaded by [ByteSearch#vectorized()] once the `jdk.incubator.vector` module is
+/// known to be present. The tail of each range which does not fill a vector is handled by the scalar implementation.
+///
+/// Most whitespace runs and many strings are only a few bytes long, so forward searches first look at a short
+/// prefix of the range with the scalar implementation, and only switch to vectors for longer runs.
+final class VectorByteSearch implements ByteSearch {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final ByteSearch SCALAR = ByteSearch.scalar();
+    private static final int SCALAR_PREFIX = 16;
+
+    @Override
+    public long indexOf(MemorySegment s, long from, long to, byte b) {
+        long prefix = Math.min(to, from + SCALAR_PREFIX);
+        long i = SCALAR.indexOf(s, from, prefix, b);
+        if (i < prefix || prefix == to) return i;
+
+        for (long bound = i + SPECIES.loopBound(to - i); i < bound; i += SPECIES.length()) {
+            VectorMask<Byte> m = load(s, i).eq(b);
+            if (m.anyTrue()) return i + m.firstTrue();
+        }
+        return SCALAR.indexOf(s, i, to, b);
+    }
+
+    @Override
+    public long lastIndexOf(MemorySegment s, long from, long to, byte b) {
+        long last = -1;
+        long i = from;
+        for (long bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            VectorMask<Byte> m = load(s, i).eq(b);
+            if (m.anyTrue()) last = i + m.lastTrue();
+        }
+        long tail = SCALAR.lastIndexOf(s, i, to, b);
+        return tail >= 0 ? tail : last;
+    }
+
+    @Override
+    public long skipWhitespace(MemorySegment s, long from, long to) {
+        long prefix = Math.min(to, from + SCALAR_PREFIX);
+        long i = SCALAR.skipWhitespace(s, from, prefix);
+        if (i < prefix || prefix == to) return i;
+
+        for (long bound = i + SPECIES.loopBound(to - i); i < bound; i += SPECIES.length()) {
+            ByteVector v = load(s, i);
+            VectorMask<Byte> other = v.eq((byte) ' ').or(v.eq((byte) '\t')).or(v.eq((byte) '\r')).not();
+            if (other.anyTrue()) return i + other.firstTrue();
+        }
+        return SCALAR.skipWhitespace(s, i, to);
+    }
+
+    @Override
+    public long count(MemorySegment s, long from, long to, byte b) {
+        long count = 0;
+        long i = from;
+        for (long bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            count += load(s, i).eq(b).trueCount();
+        }
+        return count + SCALAR.count(s, i, to, b);
+    }
+
+    @Override
+    public long utf16Length(MemorySegment s, long from, long to) {
+        long length = 0;
+        long i = from;
+        for (long bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            ByteVector v = load(s, i);
+            length += v.and((byte) 0xC0).compare(VectorOperators.NE, (byte) 0x80).trueCount();
+            length += v.and((byte) 0xF8).eq((byte) 0xF0).trueCount();
+        }
+        return length + SCALAR.utf16Length(s, i, to);
+    }
+
+    private static ByteVector load(MemorySegment s, long offset) {
+        return ByteVector.fromMemorySegment(SPECIES, s, offset, ByteOrder.nativeOrder());
+    }
+}